@@ -4,18 +4,26 @@ import com.github.strophon.init.Instantiator;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
 
 public class ActionServerBuilder {
+    public static final String HTTP_SERVER_OPTIONS_KEY = "httpServerOptions";
+
     private Vertx vertx;
     private Instantiator instantiator;
 
     private int serverInstances;
     private int actionVerticleInstances;
     private int eventVerticleInstances;
+    private int emailVerticleInstances = 1;
 
     private DeploymentOptions serverDeploymentOptions = new DeploymentOptions();
     private DeploymentOptions actionVerticleDeploymentOptions = new DeploymentOptions();
     private DeploymentOptions eventVerticleDeploymentOptions = new DeploymentOptions();
+    private DeploymentOptions emailVerticleDeploymentOptions = new DeploymentOptions();
+
+    private HttpServerOptions httpServerOptions;
 
     public ActionServerBuilder(Vertx vertx, String instantiatorClass) {
         this(vertx, getInstantiator(instantiatorClass));
@@ -37,6 +45,16 @@ public class ActionServerBuilder {
         eventVerticleInstances = numEventLoops / 2;
     }
 
+    /**
+     * Provides recommended options for the <code>Vertx</code> instance passed to this builder:
+     * the default options, but using the native (epoll/kqueue) transport when it is available on
+     * the classpath.
+     * @return recommended <code>VertxOptions</code>
+     */
+    public static VertxOptions getDefaultVertxOptions() {
+        return new VertxOptions().setPreferNativeTransport(true);
+    }
+
     private static Instantiator getInstantiator(String instantiatorClass) {
         try {
             return (Instantiator) Class.forName(instantiatorClass).newInstance();
@@ -60,6 +78,22 @@ public class ActionServerBuilder {
         return this;
     }
 
+    public final ActionServerBuilder withEmailVerticleInstances(int emailVerticleInstances) {
+        this.emailVerticleInstances = emailVerticleInstances;
+        return this;
+    }
+
+    /**
+     * Sets the options for the HTTP server of each server instance, instead of those provided by
+     * <code>Instantiator.getHttpServerOptions()</code>.
+     * @param options the HTTP server options
+     * @return this builder
+     */
+    public final ActionServerBuilder withHttpServerOptions(HttpServerOptions options) {
+        this.httpServerOptions = options;
+        return this;
+    }
+
     public final ActionServerBuilder withServerOptions(DeploymentOptions options) {
         return withServerOptions(options, true);
     }
@@ -72,6 +106,10 @@ public class ActionServerBuilder {
         return withEventVerticleOptions(options, true);
     }
 
+    public final ActionServerBuilder withEmailVerticleOptions(DeploymentOptions options) {
+        return withEmailVerticleOptions(options, true);
+    }
+
     public final ActionServerBuilder withServerOptions(DeploymentOptions options,
                                                        boolean useOptionsInstanceNumber) {
         this.serverDeploymentOptions = options;
@@ -99,7 +137,23 @@ public class ActionServerBuilder {
         return this;
     }
 
+    public final ActionServerBuilder withEmailVerticleOptions(DeploymentOptions options,
+                                                              boolean useOptionsInstanceNumber) {
+        this.emailVerticleDeploymentOptions = options;
+        if(useOptionsInstanceNumber) {
+            emailVerticleInstances = options.getInstances();
+        }
+        return this;
+    }
+
     public final void build() {
+        if(httpServerOptions != null) {
+            JsonObject config = serverDeploymentOptions.getConfig() == null ?
+                    new JsonObject() : serverDeploymentOptions.getConfig().copy();
+            config.put(HTTP_SERVER_OPTIONS_KEY, httpServerOptions.toJson());
+            serverDeploymentOptions.setConfig(config);
+        }
+
         vertx.deployVerticle(instantiator.getServerVerticleSupplier(),
                 serverDeploymentOptions.setInstances(serverInstances));
 
@@ -108,5 +162,10 @@ public class ActionServerBuilder {
 
         vertx.deployVerticle(instantiator.getEventVerticleSupplier(),
                 eventVerticleDeploymentOptions.setInstances(eventVerticleInstances));
+
+        if(instantiator.useEmailOutbox()) {
+            vertx.deployVerticle(instantiator.getEmailVerticleSupplier(),
+                    emailVerticleDeploymentOptions.setInstances(emailVerticleInstances));
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.github.strophon.action;
 
+import co.paralleluniverse.fibers.Suspendable;
 import com.github.strophon.util.Randomizer;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
@@ -8,9 +9,13 @@ import com.github.strophon.action.input.ActionInput;
 import com.github.strophon.action.output.Event;
 import com.github.strophon.action.output.Result;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.DataKey;
+import com.github.strophon.data.transfer.ChangeSet;
 import com.github.strophon.data.transfer.ObjectContainer;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 public interface Action {
@@ -52,8 +57,81 @@ public interface Action {
 
     void setDataIO(DataIO dio);
 
+    @Suspendable
     ObjectContainer fetchAndLockDataObjects();
 
+    /**
+     * Declares the data this action will fetch and lock, before it is fetched. Declared keys are
+     * fetched with <code>DataIO.fetchAndLock()</code> and locked in <code>DataKey</code> order, so
+     * that actions locking the same keys can't deadlock each other. When every action
+     * at the same depth of a subsequent-action cascade declares its keys, and no two of them
+     * share a key, the executor fetches all of their data in a single
+     * <code>DataIO.fetchAndLock()</code> call, builds each action's container with
+     * <code>buildDataObjects()</code> instead of calling <code>fetchAndLockDataObjects()</code>,
+     * and commits the whole level once. If the executor has a parallel pool, actions whose keys
+     * don't overlap those of any action queued before them at the same depth run concurrently
+     * instead, each in its own transaction. Actions that declare keys must only read and write
+     * data under those keys. Default is <code>null</code>, for keys not known in advance.
+     * @return the keys of the data this action needs, or <code>null</code>
+     */
+    default Set<DataKey> getDataKeys() {
+        return null;
+    }
+
+    /**
+     * Builds this action's container from data prefetched for its keys (see
+     * <code>getDataKeys()</code>). Must be implemented by actions that declare keys.
+     * @param data the fetched data by key, including other actions' data
+     * @return the container to inject
+     */
+    default ObjectContainer buildDataObjects(Map<DataKey, Object> data) {
+        throw new UnsupportedOperationException("buildDataObjects() not implemented");
+    }
+
+    /**
+     * Specifies whether this action can be executed optimistically, when the executor allows it
+     * (see <code>ActionExecutor.setOptimisticExecution()</code>): its data is then fetched without
+     * locks by <code>fetchDataObjects()</code>, and locked and checked against the versions read
+     * (see <code>DataIO.lockAndValidateVersions()</code>) just before <code>writeChanges()</code>.
+     * If it changed, the action is run again with the same seed. <code>writeChanges()</code> must
+     * increment the versions of the data it writes. Default is <code>false</code>.
+     * @return whether this action supports optimistic execution
+     */
+    default boolean supportsOptimisticExecution() {
+        return false;
+    }
+
+    /**
+     * Fetches this action's data without locking it, for optimistic execution, recording the
+     * version of each piece of data read with <code>ObjectContainer.setVersion()</code>. As the
+     * versions are validated, data can be read from the entity cache (see
+     * <code>DataIO.getCachedEntity()</code>). Must be implemented by actions that support
+     * optimistic execution.
+     * @return the container to inject
+     */
+    @Suspendable
+    default ObjectContainer fetchDataObjects() {
+        throw new UnsupportedOperationException("fetchDataObjects() not implemented");
+    }
+
+    /**
+     * Specifies whether this action only reads data. Read-only actions (or actions whose
+     * <code>ActionType.isReadOnly()</code> returns <code>true</code>) fetch their data without
+     * locks with <code>fetchDataObjects()</code>, so they can read from the entity cache, and
+     * are never retried. Of their reads, only the <code>DataIO</code> reads that
+     * <code>ReplicaRoutingDataIO</code> routes (unlocked user and unseen event reads) may be
+     * served from a replica; everything else reads from the primary.
+     * <code>writeChanges()</code> isn't called, nothing is committed, and events and subsequent
+     * actions they add are discarded. Must implement <code>fetchDataObjects()</code>: this is
+     * checked on a new instance of each allowed type when the <code>ActionExecutor</code> is
+     * created, so the result must not depend on the input.
+     * Default is <code>false</code>.
+     * @return whether this action is read-only
+     */
+    default boolean isReadOnly() {
+        return false;
+    }
+
     void inject(ObjectContainer container);
 
     Result checkForErrors();
@@ -62,6 +140,7 @@ public interface Action {
 
     Result performAction();
 
+    @Suspendable
     void writeChanges();
 
 
@@ -76,6 +155,16 @@ public interface Action {
 
     ObjectContainer getInjection();
 
+    /**
+     * Lists what this action changed in its injected container, for use in
+     * <code>writeChanges()</code>. Only available if the container's changes are tracked (see
+     * <code>ObjectContainer.isChangeTracked()</code>).
+     * @return the container's changes
+     */
+    default ChangeSet getChanges() {
+        return getInjection().getChanges();
+    }
+
     default boolean needsRandomNumbers() {
         return false;
     }
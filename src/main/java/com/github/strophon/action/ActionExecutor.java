@@ -1,41 +1,127 @@
 package com.github.strophon.action;
 
 
+import co.paralleluniverse.fibers.Suspendable;
 import com.github.strophon.data.transfer.DataSource;
+import com.github.strophon.metrics.ContentionMetrics;
 import com.github.strophon.util.Randomizer;
+import com.github.strophon.util.SyncUtil;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import com.github.strophon.action.input.ActionInput;
+import com.github.strophon.action.output.Event;
 import com.github.strophon.action.output.Result;
+import com.github.strophon.data.CrossShardException;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.DataKey;
+import com.github.strophon.data.VersionConflictException;
 import com.github.strophon.data.transfer.ObjectContainer;
 
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class ActionExecutor {
     private static final Logger logger = LoggerFactory.getLogger(ActionExecutor.class);
     private static final Gson GSON = new Gson();
 
+    private static final int DERIVED_SEED_SIZE = 20;
+
     private Set<ActionType> allowedTypes;
     private Function<String, ActionType> typeRetriever;
+    private ForkJoinPool parallelPool;
+
+    private int maxAttempts = 1;
+    private long retryBackoffMillis;
+    private ContentionMetrics contentionMetrics;
+
+    private boolean optimisticExecution;
+    private int maxOptimisticAttempts = 1;
+
+    private boolean subsequentActionsEnabled = true;
 
     public ActionExecutor(List<ActionType> allowedTypes,
                           Function<String, ActionType> typeRetriever) {
+        this(allowedTypes, typeRetriever, null);
+    }
+
+    /**
+     * @param allowedTypes the action types this executor will run
+     * @param typeRetriever looks up action types by name
+     * @param parallelPool the pool on which independent subsequent actions are run, or
+     *                     <code>null</code> to run them serially
+     * @throws IllegalArgumentException if an allowed type is read-only (see
+     * <code>Action.isReadOnly()</code>) but its actions don't implement
+     * <code>fetchDataObjects()</code>
+     */
+    public ActionExecutor(List<ActionType> allowedTypes,
+                          Function<String, ActionType> typeRetriever,
+                          ForkJoinPool parallelPool) {
         this.typeRetriever = typeRetriever;
+        this.parallelPool = parallelPool;
 
         this.allowedTypes = new HashSet<>();
 
         for(ActionType at : allowedTypes) {
             if(at.getConstructor() != null) {
+                checkReadOnly(at);
                 this.allowedTypes.add(at);
             }
         }
     }
 
+    /**
+     * Enables retries in <code>executeWithRetry()</code>.
+     * @param maxAttempts the maximum number of times an action is run; 1 disables retries
+     * @param retryBackoffMillis the base backoff before a retry, in milliseconds; it doubles with
+     *                           each attempt, and a random part is added so that the conflicting
+     *                           transactions don't retry in lockstep
+     * @return this executor
+     */
+    public ActionExecutor setRetryPolicy(int maxAttempts, long retryBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+        return this;
+    }
+
+    public ActionExecutor setContentionMetrics(ContentionMetrics contentionMetrics) {
+        this.contentionMetrics = contentionMetrics;
+        return this;
+    }
+
+    /**
+     * Enables optimistic execution of the actions that support it (see
+     * <code>Action.supportsOptimisticExecution()</code>), if the <code>DataIO</code> supports
+     * version validation.
+     * @param enabled whether to execute actions optimistically
+     * @param maxOptimisticAttempts the number of version conflicts after which
+     *                              <code>executeWithRetry()</code> runs the action pessimistically
+     * @return this executor
+     */
+    public ActionExecutor setOptimisticExecution(boolean enabled, int maxOptimisticAttempts) {
+        this.optimisticExecution = enabled;
+        this.maxOptimisticAttempts = Math.max(1, maxOptimisticAttempts);
+        return this;
+    }
+
+    /**
+     * Specifies whether the subsequent actions queued by actions are run. If not, they are
+     * dropped, e.g. for replays, where their injections aren't available.
+     * @param enabled whether to run subsequent actions; default is <code>true</code>
+     * @return this executor
+     */
+    public ActionExecutor setSubsequentActionsEnabled(boolean enabled) {
+        this.subsequentActionsEnabled = enabled;
+        return this;
+    }
+
     public Action getAction(ActionInput input) {
         ActionType type = getTypeFromInput(input);
 
@@ -62,6 +148,34 @@ public class ActionExecutor {
         return action;
     }
 
+    /**
+     * @param action an action
+     * @return whether the action, or its type, is read-only (see <code>Action.isReadOnly()</code>)
+     */
+    public boolean isReadOnly(Action action) {
+        return action.isReadOnly() || getTypeFromInput(action.getInput()).isReadOnly();
+    }
+
+    // fails when the executor is created, rather than on every request of a read-only type
+    private static void checkReadOnly(ActionType type) {
+        Action action = type.getConstructor().get();
+        if(!type.isReadOnly() && !action.isReadOnly()) {
+            return;
+        }
+
+        Class<?> declaringClass;
+        try {
+            declaringClass = action.getClass().getMethod("fetchDataObjects").getDeclaringClass();
+        } catch(NoSuchMethodException e) { // can't happen, as Action declares it
+            throw new IllegalStateException(e);
+        }
+
+        if(declaringClass == Action.class) {
+            throw new IllegalArgumentException("Action type " + type.getEnumName()
+                    + " is read-only but doesn't implement fetchDataObjects()");
+        }
+    }
+
     private ActionType getTypeFromInput(ActionInput input) {
         try {
             ActionType type = typeRetriever.apply(input.getActionType());
@@ -76,32 +190,214 @@ public class ActionExecutor {
         }
     }
 
+    @Suspendable
     public Result execute(Action action, byte[] seed, DataSource dataSource) {
+        return execute(action, seed, dataSource, optimisticExecution);
+    }
+
+    /**
+     * Executes an action, optimistically if allowed and supported by the action and the
+     * <code>DataIO</code>.
+     * @param allowOptimistic whether the action may be executed optimistically: its data is then
+     *                        fetched without locks, and locked and checked for changes after the
+     *                        action is performed, just before its changes are written
+     * @throws VersionConflictException if optimistically fetched data changed in the meantime
+     */
+    @Suspendable
+    private Result execute(Action action, byte[] seed, DataSource dataSource,
+                           boolean allowOptimistic) {
+        if(isReadOnly(action)) {
+            return executeReadOnly(action, seed, dataSource);
+        }
+
         if(action.needsRandomNumbers()) {
             setRandomizerSeed(action, seed);
         }
 
+        boolean optimistic = false;
+
         ObjectContainer injection = dataSource.getContainer();
         if(action.getError() == null && dataSource.useDatabase()) {
-            action.setDataIO(dataSource.getDataIO());
-            injection = action.fetchAndLockDataObjects();
+            DataIO dio = dataSource.getDataIO();
+            action.setDataIO(dio);
+
+            optimistic = allowOptimistic
+                    && action.supportsOptimisticExecution()
+                    && dio.supportsVersionValidation();
+
+            injection = optimistic ? action.fetchDataObjects() : fetchAndLock(action, dio);
         }
 
         inject(action, injection);
 
         Result result = performAction(action);
 
+        // even an error result may have been caused by stale data
+        if(optimistic) {
+            dataSource.getDataIO().lockAndValidateVersions(
+                    injection == null ? new TreeMap<>() : injection.getVersions());
+        }
+
         writeChanges(action, dataSource.getDataIO());
 
+        // the action has committed: from here on, failures must neither fail nor retry it
+        try {
+            performAllSubsequentActions(action, dataSource);
+        } catch(RuntimeException e) {
+            logger.error("Exception from subsequent actions after the action committed (Input: "
+                    + GSON.toJson(action.getInput()) + " ): ", e);
+        }
+
+        return result;
+    }
+
+    @Suspendable
+    private void performAllSubsequentActions(Action action, DataSource dataSource) {
+        if(!subsequentActionsEnabled) {
+            if(action.getSubsequentActions() != null) {
+                action.getSubsequentActions().clear();
+            }
+            return;
+        }
+
+        // waiting on the pool would block a fiber's event loop, so non-blocking DataIOs run
+        // subsequent actions serially
+        boolean parallel = parallelPool != null
+                && dataSource.useDatabase()
+                && dataSource.getDataIoFactory() != null
+                && !dataSource.getDataIO().isNonBlocking();
+
         while(action.getError() == null
                 && action.getSubsequentActions() != null
                 && !action.getSubsequentActions().isEmpty()) {
-            performSubsequentActions(action, dataSource.getDataIO());
+            if(parallel) {
+                performSubsequentActionsInParallel(action, dataSource.getDataIoFactory());
+            } else {
+                performSubsequentActions(action, dataSource.getDataIO());
+            }
+        }
+    }
+
+    /**
+     * Executes a read-only action: its data is fetched without locks, and nothing is written or
+     * committed. Events and subsequent actions it adds are discarded.
+     */
+    @Suspendable
+    private Result executeReadOnly(Action action, byte[] seed, DataSource dataSource) {
+        if(action.needsRandomNumbers()) {
+            setRandomizerSeed(action, seed);
+        }
+
+        ObjectContainer injection = dataSource.getContainer();
+        if(action.getError() == null && dataSource.useDatabase()) {
+            action.setDataIO(dataSource.getDataIO());
+            injection = action.fetchDataObjects();
+        }
+
+        inject(action, injection);
+
+        Result result = performAction(action);
+
+        if(action.getError() == null) {
+            List<Event> events = action.getEvents();
+            List<ActionInput> subsequentActions = action.getSubsequentActions();
+
+            if((events != null && !events.isEmpty())
+                    || (subsequentActions != null && !subsequentActions.isEmpty())) {
+                logger.warn("Read-only " + action.getInput().getActionType() + " action added"
+                        + " events or subsequent actions; discarding them");
+                if(events != null) {
+                    events.clear();
+                }
+                if(subsequentActions != null) {
+                    subsequentActions.clear();
+                }
+            }
+
+            action.getResult().setSuccess(true);
         }
 
         return result;
     }
 
+    /**
+     * Executes an action like <code>execute()</code>, running it again if its transaction loses a
+     * lock conflict (see <code>DataIO.isRetryableFailure()</code>), up to the maximum number of
+     * attempts set by <code>setRetryPolicy()</code>. Before each retry, the <code>DataIO</code> is
+     * reset to roll back the failed transaction, and the action is rebuilt from its input and run
+     * with the same seed. If the <code>DataIO</code> can't be reset, the failure is thrown as is.
+     * Only the action's own transaction is retried: once it has committed, failures of subsequent
+     * actions, including their commits, are only logged.
+     * An optimistically executed action whose data changed is run again in the same way; these
+     * reruns don't count as attempts, but after <code>maxOptimisticAttempts</code> version
+     * conflicts the action is run pessimistically (see <code>setOptimisticExecution()</code>).
+     * @param action the action to execute
+     * @param seed the random seed, if the action needs random numbers
+     * @param dataSource the action's data
+     * @return the action as last run, whose result or error is the outcome
+     */
+    @Suspendable
+    public Action executeWithRetry(Action action, byte[] seed, DataSource dataSource) {
+        int lockConflicts = 0;
+        int versionConflicts = 0;
+
+        while(true) {
+            try {
+                execute(action, seed, dataSource,
+                        optimisticExecution && versionConflicts < maxOptimisticAttempts);
+                return action;
+            } catch(RuntimeException e) {
+                DataIO dio = dataSource.getDataIO();
+                if(!dataSource.useDatabase() || !dio.isRetryableFailure(e)) {
+                    throw e;
+                }
+
+                String type = action.getInput().getActionType();
+
+                if(e instanceof VersionConflictException) {
+                    versionConflicts++;
+
+                    if(contentionMetrics != null) {
+                        contentionMetrics.recordConflict(type,
+                                Collections.singleton(((VersionConflictException) e).getKey()));
+                    }
+                } else {
+                    lockConflicts++;
+
+                    if(contentionMetrics != null) {
+                        contentionMetrics.recordConflict(type, action.getDataKeys());
+                    }
+
+                    if(lockConflicts >= maxAttempts) {
+                        if(contentionMetrics != null) {
+                            contentionMetrics.recordExhausted();
+                        }
+                        throw e;
+                    }
+                }
+
+                if(!dio.reset()) {
+                    throw e;
+                }
+
+                logger.info((e instanceof VersionConflictException ? "Version" : "Lock")
+                        + " conflict in " + type + " action; retrying");
+
+                long backoff = backoff(lockConflicts + versionConflicts);
+                if(backoff > 0) {
+                    SyncUtil.sleep(backoff);
+                }
+
+                action = getAction(action.getInput());
+            }
+        }
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = retryBackoffMillis << Math.min(attempt - 1, 16);
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
     private void setRandomizerSeed(Action action, byte[] seed) {
         action.setSeed(seed);
         Randomizer rand = new Randomizer(seed);
@@ -112,6 +408,10 @@ public class ActionExecutor {
         String originalInjection = GSON.toJson(container);
         action.setOriginalInjection(originalInjection);
 
+        if(container != null && container.isChangeTracked()) {
+            container.captureOriginal(originalInjection);
+        }
+
         if(action.getError() == null) {
             action.inject(container);
         }
@@ -163,7 +463,13 @@ public class ActionExecutor {
         action.getResult().setType(action.getInput().getActionType());
     }
 
+    @Suspendable
     private void writeChanges(Action action, DataIO dio) {
+        writeChanges(action, dio, true);
+    }
+
+    @Suspendable
+    private void writeChanges(Action action, DataIO dio, boolean commit) {
         if(action.getError() == null) {
             if(dio != null) {
                 action.writeChanges();
@@ -172,53 +478,348 @@ public class ActionExecutor {
                     dio.addEvents(action.getEvents());
                 }
 
-                dio.commitSql();
+                if(commit) {
+                    dio.commitSql();
+                }
             }
 
             action.getResult().setSuccess(true);
         }
     }
 
-    private void performSubsequentActions(Action action, DataIO dio) {
+    /**
+     * Builds the parent's queued subsequent actions. They share the parent's
+     * <code>Randomizer</code>, so running them in queue order draws the same numbers for the same
+     * seed (see <code>performSubsequentActionsInParallel()</code> for the exception).
+     */
+    private List<Action> takeSubsequentActions(Action action) {
         List<ActionInput> currentSubsequentActions = action.getSubsequentActions();
         action.setSubsequentActions(new ArrayList<>());
 
+        List<Action> subsequentActions = new ArrayList<>(currentSubsequentActions.size());
         for(ActionInput input : currentSubsequentActions) {
             Action subsequentAction = getAction(input);
             subsequentAction.setSubsequent(true);
+
+            subsequentAction.setRandomizer(action.getRandomizer());
+            subsequentActions.add(subsequentAction);
+        }
+        return subsequentActions;
+    }
+
+    /**
+     * Runs a level of subsequent actions serially on the parent's <code>DataIO</code>. If the whole
+     * level can be prefetched, it runs in a single transaction, and its events and further
+     * subsequent actions are only merged once that transaction has committed; if anything in it
+     * fails, the level is rolled back and run again one action per transaction. Otherwise each
+     * action commits on its own, and a failed action is rolled back without affecting the others.
+     */
+    @Suspendable
+    private void performSubsequentActions(Action action, DataIO dio) {
+        List<Action> subsequentActions = takeSubsequentActions(action);
+
+        // if the whole level was prefetched, its locks are held until the level is committed
+        Map<Action, ObjectContainer> prefetched =
+                dio == null ? null : prefetch(subsequentActions, dio);
+
+        if(prefetched != null) {
+            List<ObjectContainer> subInjections = action.getInjection().getSubInjections();
+            int subInjectionCount = subInjections == null ? 0 : subInjections.size();
+            int subInjectionIndex = action.getSubInjectionIndex();
+
             try {
-                subsequentAction.setRandomizer(action.getRandomizer());
+                performBatchedLevel(action, subsequentActions, prefetched, dio);
+                return;
+            } catch(Exception e) {
+                logger.error("Batched subsequent actions failed; running them one by one", e);
+            }
+
+            // forget the failed attempt: its writes, sub-injections and actions
+            if(!dio.reset()) {
+                logger.error("Subsequent actions could not be rolled back, so they were dropped"
+                        + " (Inputs: " + GSON.toJson(inputsOf(subsequentActions)) + " )");
+                return;
+            }
+
+            subInjections = action.getInjection().getSubInjections();
+            if(subInjections != null) {
+                subInjections.subList(subInjectionCount, subInjections.size()).clear();
+            }
+            action.setSubInjectionIndex(subInjectionIndex);
+
+            subsequentActions = rebuild(action, subsequentActions);
+        }
+
+        for(Action subsequentAction : subsequentActions) {
+            try {
+                Result subsequentResult =
+                        performSubsequentAction(action, subsequentAction, null, dio, true);
+
+                mergeSubsequentAction(action, subsequentAction, subsequentResult);
+            } catch(Exception e) {
+                logger.error("Exception from subsequent action (Input: "
+                        + GSON.toJson(subsequentAction.getInput()) + " ): ", e);
 
+                // the next action must not run in, or commit, this one's failed transaction
                 if(dio != null) {
-                    subsequentAction.setDataIO(dio);
-                    action.getInjection().addSubInjection(subsequentAction.fetchAndLockDataObjects());
+                    dio.reset();
                 }
+            }
+        }
+    }
+
+    /**
+     * Runs a prefetched level of subsequent actions in one transaction. Nothing is merged into the
+     * parent until the transaction has committed, so that a failure leaves no trace but the
+     * sub-injections the caller removes.
+     */
+    @Suspendable
+    private void performBatchedLevel(Action action, List<Action> subsequentActions,
+                                     Map<Action, ObjectContainer> prefetched, DataIO dio) {
+        List<Result> results = new ArrayList<>(subsequentActions.size());
+
+        for(Action subsequentAction : subsequentActions) {
+            results.add(performSubsequentAction(action, subsequentAction,
+                                                prefetched.get(subsequentAction), dio, false));
+        }
 
-                int subInjectionIndex = action.getSubInjectionIndex();
+        dio.commitSql();
 
-                inject(subsequentAction, action.getInjection()
-                                               .getSubInjections()
-                                               .get(subInjectionIndex));
+        for(int i = 0; i < subsequentActions.size(); i++) {
+            mergeSubsequentAction(action, subsequentActions.get(i), results.get(i));
+        }
+    }
+
+    /**
+     * Fetches (unless prefetched), injects, performs and writes one subsequent action.
+     */
+    @Suspendable
+    private Result performSubsequentAction(Action action, Action subsequentAction,
+                                           ObjectContainer prefetched, DataIO dio, boolean commit) {
+        if(dio != null) {
+            subsequentAction.setDataIO(dio);
+
+            ObjectContainer container =
+                    prefetched != null ? prefetched : fetchAndLock(subsequentAction, dio);
+            action.getInjection().addSubInjection(container);
+        }
 
-                action.setSubInjectionIndex(++subInjectionIndex);
+        int subInjectionIndex = action.getSubInjectionIndex();
 
-                Result subsequentResult = performAction(subsequentAction);
+        inject(subsequentAction, action.getInjection()
+                                       .getSubInjections()
+                                       .get(subInjectionIndex));
 
-                writeChanges(subsequentAction, dio);
+        action.setSubInjectionIndex(++subInjectionIndex);
 
-                action.getSubsequentActions().addAll(subsequentAction.getSubsequentActions());
+        Result subsequentResult = performAction(subsequentAction);
 
-                if(subsequentResult.getSuccess() != null && subsequentResult.getSuccess()) {
-                    action.getEvents().addAll(subsequentAction.getEvents());
-                } else {
-                    logger.error("Error from subsequent action (Input: "
-                            + GSON.toJson(subsequentAction.getInput()) + " ): "
-                            + subsequentResult.getError());
+        writeChanges(subsequentAction, dio, commit);
+
+        return subsequentResult;
+    }
+
+    // fresh instances of subsequent actions that ran in a rolled-back transaction
+    private List<Action> rebuild(Action parent, List<Action> actions) {
+        List<Action> rebuilt = new ArrayList<>(actions.size());
+        for(Action action : actions) {
+            Action fresh = getAction(action.getInput());
+            fresh.setSubsequent(true);
+            fresh.setRandomizer(parent.getRandomizer());
+            rebuilt.add(fresh);
+        }
+        return rebuilt;
+    }
+
+    private static List<ActionInput> inputsOf(List<Action> actions) {
+        List<ActionInput> inputs = new ArrayList<>(actions.size());
+        for(Action action : actions) {
+            inputs.add(action.getInput());
+        }
+        return inputs;
+    }
+
+    /**
+     * Fetches and locks an action's data. If the action declares its keys (see
+     * <code>Action.getDataKeys()</code>), they are fetched with one
+     * <code>DataIO.fetchAndLock()</code> call, which locks them in <code>DataKey</code> order, so
+     * that two actions locking the same keys always lock them in the same order and can't deadlock
+     * each other. Otherwise, or if the <code>DataIO</code> doesn't support batched fetches, the
+     * action fetches its own data.
+     */
+    @Suspendable
+    private ObjectContainer fetchAndLock(Action action, DataIO dio) {
+        Set<DataKey> keys = action.getError() == null ? action.getDataKeys() : null;
+
+        if(keys != null && !keys.isEmpty()) {
+            Map<DataKey, Object> data = dio.fetchAndLock(new TreeSet<>(keys));
+            if(data != null) {
+                return action.buildDataObjects(data);
+            }
+        }
+
+        return action.fetchAndLockDataObjects();
+    }
+
+    private void mergeSubsequentAction(Action action, Action subsequentAction, Result result) {
+        action.getSubsequentActions().addAll(subsequentAction.getSubsequentActions());
+
+        if(result.getSuccess() != null && result.getSuccess()) {
+            action.getEvents().addAll(subsequentAction.getEvents());
+        } else {
+            logger.error("Error from subsequent action (Input: "
+                    + GSON.toJson(subsequentAction.getInput()) + " ): "
+                    + result.getError());
+        }
+    }
+
+    /**
+     * Runs a level of subsequent actions on the parallel pool, each with its own
+     * <code>DataIO</code> and transaction. Each action waits for every action queued before it
+     * whose keys overlap its own (see <code>Action.getDataKeys()</code>); actions without declared
+     * keys, or that failed initialization, wait for and are waited on by all others. As actions
+     * only touch data under their keys, this gives the same data as running them in queue order.
+     * A shared <code>Randomizer</code> would make each action's draws depend on scheduling, so
+     * each action gets its own instead, seeded from the parent's in queue order. Together with
+     * results, events and further subsequent actions being merged in queue order, this makes the
+     * outcome independent of scheduling; but the actions draw different numbers than they would
+     * serially (see <code>Instantiator.getSubsequentActionPool()</code>).
+     */
+    private void performSubsequentActionsInParallel(Action action, Supplier<DataIO> dioFactory) {
+        List<Action> subsequentActions = takeSubsequentActions(action);
+        int size = subsequentActions.size();
+
+        if(action.getRandomizer() != null) {
+            for(Action subsequentAction : subsequentActions) {
+                setRandomizerSeed(subsequentAction,
+                                  action.getRandomizer().nextBytes(DERIVED_SEED_SIZE));
+            }
+        }
+
+        ObjectContainer[] containers = new ObjectContainer[size];
+        boolean[] fetched = new boolean[size];
+        Result[] results = new Result[size];
+
+        List<Set<DataKey>> footprints = new ArrayList<>(size);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(size);
+
+        for(int i = 0; i < size; i++) {
+            Action subsequentAction = subsequentActions.get(i);
+            Set<DataKey> footprint =
+                    subsequentAction.getError() == null ? subsequentAction.getDataKeys() : null;
+
+            List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+            for(int j = 0; j < i; j++) {
+                if(conflicts(footprint, footprints.get(j))) {
+                    dependencies.add(tasks.get(j));
                 }
-            } catch(Exception e) {
+            }
+            footprints.add(footprint);
+
+            int index = i;
+            tasks.add(CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .handleAsync((ignored, dependencyFailure) -> { // runs even if one failed
+                        try(DataIO dio = dioFactory.get()) {
+                            subsequentAction.setDataIO(dio);
+
+                            containers[index] = fetchAndLock(subsequentAction, dio);
+                            fetched[index] = true;
+
+                            inject(subsequentAction, containers[index]);
+                            results[index] = performAction(subsequentAction);
+                            writeChanges(subsequentAction, dio);
+                        }
+                        return null;
+                    }, parallelPool));
+        }
+
+        // wait for the whole level without throwing; failures are logged per action below
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                         .handle((ignored, failure) -> null)
+                         .join();
+
+        for(int i = 0; i < size; i++) {
+            Action subsequentAction = subsequentActions.get(i);
+
+            if(fetched[i]) {
+                action.getInjection().addSubInjection(containers[i]);
+                action.setSubInjectionIndex(action.getSubInjectionIndex() + 1);
+            }
+
+            try {
+                tasks.get(i).join();
+                mergeSubsequentAction(action, subsequentAction, results[i]);
+            } catch(CompletionException e) {
                 logger.error("Exception from subsequent action (Input: "
-                        + GSON.toJson(subsequentAction.getInput()) + " ): ", e);
+                        + GSON.toJson(subsequentAction.getInput()) + " ): ", e.getCause());
+            }
+        }
+    }
+
+    private static boolean conflicts(Set<DataKey> footprint, Set<DataKey> otherFootprint) {
+        if(footprint == null || otherFootprint == null) {
+            return true;
+        }
+        return !Collections.disjoint(footprint, otherFootprint);
+    }
+
+    /**
+     * Fetches the data for a level of subsequent actions in one call, if every action that will
+     * run declares its keys, no two of them share a key, none of them needs random numbers (the
+     * shared <code>Randomizer</code> can't be rewound if the batch has to be run again), and the
+     * <code>DataIO</code> supports batched fetches.
+     * @return each action's container (missing for actions that won't run), or <code>null</code>
+     * if the level can't be batched
+     */
+    @Suspendable
+    private Map<Action, ObjectContainer> prefetch(List<Action> actions, DataIO dio) {
+        if(actions.size() < 2) {
+            return null;
+        }
+
+        SortedSet<DataKey> keys = new TreeSet<>();
+        List<Action> fetched = new ArrayList<>();
+
+        for(Action action : actions) {
+            if(action.getError() != null) {
+                continue;
             }
+
+            Set<DataKey> actionKeys = action.getDataKeys();
+            if(actionKeys == null || action.needsRandomNumbers()) {
+                return null;
+            }
+
+            for(DataKey key : actionKeys) {
+                if(!keys.add(key)) {
+                    return null; // overlapping actions must see each other's writes
+                }
+            }
+            fetched.add(action);
+        }
+
+        if(fetched.size() < 2) {
+            return null;
+        }
+
+        try {
+            Map<DataKey, Object> data = dio.fetchAndLock(keys);
+            if(data == null) {
+                return null;
+            }
+
+            Map<Action, ObjectContainer> containers = new IdentityHashMap<>();
+            for(Action action : fetched) {
+                containers.put(action, action.buildDataObjects(data));
+            }
+            return containers;
+        } catch(CrossShardException e) {
+            return null; // rejected before locking anything; each action may use its own shard
+        } catch(Exception e) {
+            // the rows stay locked by this transaction, so fetching them one by one still works
+            logger.error("Batched fetch for subsequent actions failed; fetching serially", e);
+            return null;
         }
     }
 }
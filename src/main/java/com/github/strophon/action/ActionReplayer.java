@@ -0,0 +1,286 @@
+package com.github.strophon.action;
+
+import com.github.strophon.action.input.ActionInput;
+import com.github.strophon.action.output.Result;
+import com.github.strophon.data.transfer.DataSource;
+import com.github.strophon.data.transfer.ObjectContainer;
+import com.github.strophon.init.Instantiator;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Replays the actions logged by <code>Action.logAction()</code>, for performance regression
+ * testing and capacity planning with real traffic. Each action is rebuilt from its logged input
+ * and original injection (see <code>Instantiator.createContainerFromString()</code>) and executed
+ * without a database, with its logged seed, so its result must match the logged one. Actions are
+ * replayed concurrently at full speed, and latency and throughput are reported per action type.
+ * Only actions logged at debug level or finer include their original injection; others are
+ * skipped. Subsequent actions can't be replayed, as their injections aren't logged, so they are
+ * dropped. The first exception thrown by each action type is reported, for diagnosis.
+ * Usage: <code>ActionReplayer &lt;instantiator class&gt; &lt;log file&gt; [threads]
+ * [iterations]</code>; the instantiator class needs a public no-argument constructor. Running
+ * more than one iteration gives the JIT compiler time to warm up.
+ */
+public class ActionReplayer {
+    private static final Gson GSON = new Gson();
+    private static final String MARKER = "Action performed: ";
+
+    private final Instantiator instantiator;
+    private final ActionExecutor executor;
+    private final int threads;
+
+    public ActionReplayer(Instantiator instantiator, int threads) {
+        this.instantiator = instantiator;
+        this.executor = new ActionExecutor(instantiator.getActionTypes(),
+                                           instantiator.getTypeRetriever())
+                .setSubsequentActionsEnabled(false);
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2) {
+            System.err.println("Usage: ActionReplayer <instantiator class> <log file>"
+                    + " [threads] [iterations]");
+            System.exit(1);
+        }
+
+        Instantiator instantiator =
+                (Instantiator) Class.forName(args[0]).getConstructor().newInstance();
+        int threads = args.length > 2
+                ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        ActionReplayer replayer = new ActionReplayer(instantiator, threads);
+
+        List<LoggedAction> actions;
+        try(Stream<String> lines = Files.lines(Paths.get(args[1]))) {
+            actions = replayer.parse(lines, System.out::println);
+        }
+        System.out.println("Replaying " + actions.size() + " actions on " + threads + " threads");
+
+        for(int i = 1; i <= iterations; i++) {
+            System.out.println("Iteration " + i + ":");
+            replayer.replay(actions).print(System.out::println);
+        }
+    }
+
+    /**
+     * Extracts the replayable actions from log lines. Other lines are ignored.
+     * @param lines the log's lines
+     * @param reportFunction receives a line reporting the number of actions skipped for lack of
+     *                       their original injection, if any (e.g.
+     *                       <code>System.out::println</code>)
+     * @return the logged actions, in order
+     */
+    public List<LoggedAction> parse(Stream<String> lines, Consumer<Object> reportFunction) {
+        List<LoggedAction> actions = new ArrayList<>();
+        LongAdder skipped = new LongAdder();
+
+        lines.forEach(line -> {
+            int index = line.indexOf(MARKER);
+            if(index < 0) {
+                return;
+            }
+
+            JsonObject logged = new JsonParser().parse(line.substring(index + MARKER.length()))
+                                                .getAsJsonObject();
+            if(!logged.has("originalInjection") || !logged.has("result")) {
+                skipped.increment();
+                return;
+            }
+
+            String input = logged.get("input").getAsString();
+            byte[] seed = logged.has("seed")
+                    ? GSON.fromJson(logged.get("seed").getAsString(), byte[].class) : null;
+
+            actions.add(new LoggedAction(
+                    instantiator.createInputFromString(input).getActionType(),
+                    input,
+                    seed,
+                    logged.get("originalInjection").getAsString(),
+                    new JsonParser().parse(logged.get("result").getAsString())));
+        });
+
+        if(skipped.sum() > 0) {
+            reportFunction.accept("Skipped " + skipped.sum()
+                    + " actions logged without their original injection");
+        }
+        return actions;
+    }
+
+    /**
+     * Replays actions on this replayer's threads, each action once.
+     * @param actions the actions to replay
+     * @return the replay's statistics
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public Report replay(List<LoggedAction> actions) throws InterruptedException {
+        Report report = new Report();
+        AtomicInteger next = new AtomicInteger();
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for(int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                int index;
+                while((index = next.getAndIncrement()) < actions.size()) {
+                    replay(actions.get(index), report);
+                }
+            }, "replayer-" + i);
+            workers.add(worker);
+        }
+
+        long start = System.nanoTime();
+        for(Thread worker : workers) {
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        report.snapshot();
+
+        return report;
+    }
+
+    private void replay(LoggedAction logged, Report report) {
+        TypeStats stats = report.stats(logged.type);
+
+        try {
+            // rebuilt for every replay, since actions modify them; not timed
+            ActionInput input = instantiator.createInputFromString(logged.input);
+            ObjectContainer injection =
+                    instantiator.createContainerFromString(logged.injection, input);
+
+            long start = System.nanoTime();
+
+            Action action = executor.getAction(input);
+            Result result = executor.execute(action, logged.seed, new DataSource(injection));
+
+            stats.latencies.recordValue(
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+            if(!logged.result.equals(new JsonParser().parse(GSON.toJson(result)))) {
+                stats.mismatches.increment();
+            }
+        } catch(RuntimeException e) {
+            stats.errors.increment();
+            stats.firstError.compareAndSet(null, e);
+        }
+    }
+
+    public static final class LoggedAction {
+        private final String type;
+        private final String input;
+        private final byte[] seed;
+        private final String injection;
+        private final JsonElement result;
+
+        private LoggedAction(String type, String input, byte[] seed, String injection,
+                             JsonElement result) {
+            this.type = type;
+            this.input = input;
+            this.seed = seed;
+            this.injection = injection;
+            this.result = result;
+        }
+    }
+
+    public static final class Report {
+        private final ConcurrentMap<String, TypeStats> types = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        private TypeStats stats(String type) {
+            return types.computeIfAbsent(String.valueOf(type), t -> new TypeStats());
+        }
+
+        // taking a recorder's histogram resets it, so this is only done once
+        private void snapshot() {
+            for(TypeStats stats : types.values()) {
+                stats.histogram = stats.latencies.getIntervalHistogram();
+            }
+        }
+
+        /**
+         * @return the number of replayed actions whose result didn't match the logged one
+         */
+        public long getMismatchCount() {
+            return types.values().stream().mapToLong(stats -> stats.mismatches.sum()).sum();
+        }
+
+        /**
+         * @return the number of replayed actions that threw an exception
+         */
+        public long getErrorCount() {
+            return types.values().stream().mapToLong(stats -> stats.errors.sum()).sum();
+        }
+
+        /**
+         * Reports the replay's throughput and latency percentiles per action type, and overall.
+         * @param reportFunction receives one line per action type (e.g.
+         *                       <code>System.out::println</code>)
+         */
+        public void print(Consumer<Object> reportFunction) {
+            double seconds = elapsedNanos / 1e9;
+            Histogram total = new Histogram(3);
+
+            for(Map.Entry<String, TypeStats> entry : new TreeMap<>(types).entrySet()) {
+                TypeStats stats = entry.getValue();
+                total.add(stats.histogram);
+
+                reportFunction.accept(format(entry.getKey(), stats.histogram, seconds)
+                        + " mismatches=" + stats.mismatches.sum()
+                        + " errors=" + stats.errors.sum());
+
+                Throwable firstError = stats.firstError.get();
+                if(firstError != null) {
+                    StringWriter trace = new StringWriter();
+                    firstError.printStackTrace(new PrintWriter(trace));
+                    reportFunction.accept("  first error: " + trace);
+                }
+            }
+
+            reportFunction.accept(format("TOTAL", total, seconds)
+                    + " mismatches=" + getMismatchCount()
+                    + " errors=" + getErrorCount());
+        }
+
+        private static String format(String name, Histogram histogram, double seconds) {
+            return name
+                    + ": count=" + histogram.getTotalCount()
+                    + " throughput=" + Math.round(histogram.getTotalCount() / seconds) + "/s"
+                    + " p50=" + histogram.getValueAtPercentile(50) + "us"
+                    + " p99=" + histogram.getValueAtPercentile(99) + "us"
+                    + " p99.9=" + histogram.getValueAtPercentile(99.9) + "us"
+                    + " max=" + histogram.getMaxValue() + "us";
+        }
+    }
+
+    private static final class TypeStats {
+        private final Recorder latencies = new Recorder(3);
+        private final LongAdder mismatches = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        private Histogram histogram; // set once the replay has finished
+    }
+}
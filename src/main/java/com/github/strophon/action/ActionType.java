@@ -44,6 +44,17 @@ public interface ActionType {
 
     String getEnumName();
 
+    /**
+     * Specifies whether every action of this type is read-only (see
+     * <code>Action.isReadOnly()</code>). Its actions must implement
+     * <code>Action.fetchDataObjects()</code>, or the <code>ActionExecutor</code> can't be
+     * created. Default is <code>false</code>.
+     * @return whether this type's actions are read-only
+     */
+    default boolean isReadOnly() {
+        return false;
+    }
+
     enum Authority {
         USER, MODERATOR, ADMIN;
     }
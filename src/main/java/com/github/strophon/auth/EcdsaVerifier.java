@@ -0,0 +1,177 @@
+package com.github.strophon.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import org.bitcoinj.core.ECKey;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs ECDSA public-key validation and signature verification on a dedicated worker pool sized
+ * to the number of CPUs, so that elliptic-curve work neither blocks event loops nor competes with
+ * database calls for the default worker pool. Parsed public keys are kept in a bounded cache keyed
+ * by user ID and a hash of the encoded key.
+ * One instance is shared by all verticles in a Vert.x instance (see <code>getShared()</code>).
+ */
+public class EcdsaVerifier implements Shareable {
+    private static final String MAP_NAME = "com.github.strophon.auth.EcdsaVerifier";
+    private static final String POOL_NAME = "ecdsa-verification";
+
+    private final WorkerExecutor executor;
+    private final Cache<KeyId, ECKey> keys;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+
+    public EcdsaVerifier(Vertx vertx, int poolSize, long maxCachedKeys) {
+        executor = vertx.createSharedWorkerExecutor(POOL_NAME, poolSize);
+        keys = CacheBuilder.newBuilder()
+                           .maximumSize(maxCachedKeys)
+                           .recordStats()
+                           .build();
+    }
+
+    /**
+     * Retrieves the verifier shared by all verticles of this Vert.x instance, creating it if it
+     * doesn't exist yet.
+     * @param vertx the Vert.x instance
+     * @param poolSize number of threads in the verification pool
+     * @param maxCachedKeys maximum number of parsed public keys to cache
+     * @return the shared verifier
+     */
+    public static EcdsaVerifier getShared(Vertx vertx, int poolSize, long maxCachedKeys) {
+        LocalMap<String, EcdsaVerifier> map = vertx.sharedData().getLocalMap(MAP_NAME);
+
+        EcdsaVerifier verifier = map.get(MAP_NAME);
+        if(verifier == null) {
+            EcdsaVerifier created = new EcdsaVerifier(vertx, poolSize, maxCachedKeys);
+            verifier = map.putIfAbsent(MAP_NAME, created);
+            if(verifier == null) {
+                verifier = created;
+            } else {
+                created.executor.close();
+            }
+        }
+
+        return verifier;
+    }
+
+    /**
+     * Parses and validates an encoded public key.
+     * @param userId the ID of the user the key belongs to, or <code>null</code> if not yet known
+     *               (e.g. during registration)
+     * @param pubkey the encoded public key
+     * @param handler receives the parsed key, or a failure if the key is invalid
+     */
+    public void parsePublicKey(Integer userId, byte[] pubkey, Handler<AsyncResult<ECKey>> handler) {
+        KeyId id = new KeyId(userId, pubkey);
+
+        ECKey key = keys.getIfPresent(id);
+        if(key != null) {
+            handler.handle(Future.succeededFuture(key));
+            return;
+        }
+
+        runOnPool(future -> {
+            ECKey parsed = ECKey.fromPublicOnly(pubkey);
+            keys.put(id, parsed);
+            future.complete(parsed);
+        }, handler);
+    }
+
+    /**
+     * Verifies a signature against a user's public key.
+     * @param userId the ID of the user who signed
+     * @param pubkey the user's encoded public key
+     * @param hash the hash that was signed
+     * @param signature the DER-encoded signature
+     * @param handler receives whether the signature is valid
+     */
+    public void verify(Integer userId, byte[] pubkey, byte[] hash, byte[] signature,
+                       Handler<AsyncResult<Boolean>> handler) {
+        KeyId id = new KeyId(userId, pubkey);
+
+        runOnPool(future -> {
+            ECKey key = keys.getIfPresent(id);
+            if(key == null) {
+                key = ECKey.fromPublicOnly(pubkey);
+                keys.put(id, key);
+            }
+            future.complete(key.verify(hash, signature));
+        }, handler);
+    }
+
+    private <T> void runOnPool(Handler<Promise<T>> task,
+                               Handler<AsyncResult<T>> handler) {
+        queued.incrementAndGet();
+        executor.<T>executeBlocking(future -> {
+            queued.decrementAndGet();
+            try {
+                task.handle(future);
+            } catch(Exception e) {
+                future.fail(e);
+            }
+        }, false, res -> {
+            completed.increment();
+            handler.handle(res);
+        });
+    }
+
+    /**
+     * @return the number of verification tasks waiting for a pool thread
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the number of verification tasks completed since startup
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public CacheStats getKeyCacheStats() {
+        return keys.stats();
+    }
+
+    private static final class KeyId {
+        private final Integer userId;
+        private final HashCode blobHash;
+
+        private KeyId(Integer userId, byte[] pubkey) {
+            this.userId = userId;
+            this.blobHash = Hashing.sha256().hashBytes(pubkey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof KeyId)) {
+                return false;
+            }
+            KeyId other = (KeyId) o;
+            return Objects.equals(userId, other.userId) && blobHash.equals(other.blobHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(userId) + blobHash.hashCode();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.strophon.auth;
+
+import com.github.strophon.util.Randomizer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Node-local cache of users' secret tokens, used by the challenge gateway to accept or reject a
+ * token without loading the user. Only keyed hashes (HMAC-SHA256 under a random per-process key)
+ * are stored, never the tokens themselves. Users that don't exist are cached too, so that
+ * guesses against unknown user IDs don't reach the database either.
+ * Entries expire after a fixed time, and are invalidated on every node through
+ * <code>INVALIDATE_ADDRESS</code> when a user's credentials change. A token loaded before an
+ * invalidation is never cached after it (see <code>getGeneration()</code>).
+ * One instance is shared by all verticles in a Vert.x instance (see <code>getShared()</code>).
+ */
+public class SecretTokenCache implements Shareable {
+    public static final String INVALIDATE_ADDRESS = "server.secrettoken.invalidate";
+
+    private static final String MAP_NAME = "com.github.strophon.auth.SecretTokenCache";
+    private static final byte[] NO_USER = new byte[0];
+    private static final int GENERATION_STRIPES = 4096; // must be a power of two
+
+    private final HashFunction hmac = Hashing.hmacSha256(Randomizer.getFreshTokenBytes(32));
+    private final Cache<Integer, byte[]> hashes;
+
+    // bumped by invalidate(); users sharing a stripe only cause each other's puts to be skipped
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public SecretTokenCache(long ttlMillis, long maxEntries) {
+        hashes = CacheBuilder.newBuilder()
+                             .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                             .maximumSize(maxEntries)
+                             .build();
+    }
+
+    /**
+     * Retrieves the cache shared by all verticles of this Vert.x instance, creating it if it
+     * doesn't exist yet.
+     * @param vertx the Vert.x instance
+     * @param ttlMillis how long entries are kept, in milliseconds
+     * @param maxEntries maximum number of users to cache
+     * @return the shared cache
+     */
+    public static SecretTokenCache getShared(Vertx vertx, long ttlMillis, long maxEntries) {
+        LocalMap<String, SecretTokenCache> map = vertx.sharedData().getLocalMap(MAP_NAME);
+
+        SecretTokenCache cache = map.get(MAP_NAME);
+        if(cache == null) {
+            SecretTokenCache created = new SecretTokenCache(ttlMillis, maxEntries);
+            cache = map.putIfAbsent(MAP_NAME, created);
+            if(cache == null) {
+                cache = created;
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Checks a submitted token against the cached one. Comparison is case-insensitive, as with
+     * <code>Misc.secureEqualsIgnoreCase()</code>.
+     * @param userId the user's ID
+     * @param token the submitted token
+     * @return <code>null</code> if the user isn't cached; otherwise whether the user exists and the
+     * token matches
+     */
+    public Boolean matches(int userId, String token) {
+        byte[] cached = hashes.getIfPresent(userId);
+        if(cached == null) {
+            return null;
+        }
+
+        return cached != NO_USER && MessageDigest.isEqual(cached, hash(token));
+    }
+
+    /**
+     * Must be read before loading a user's secret token, and passed to <code>put()</code>.
+     * @param userId the user's ID
+     * @return the user's current invalidation generation
+     */
+    public long getGeneration(int userId) {
+        return generations.get(stripe(userId));
+    }
+
+    /**
+     * Caches a user's secret token, unless the user was invalidated since it was loaded.
+     * @param userId the user's ID
+     * @param secretToken the user's secret token, or <code>null</code> if the user doesn't exist
+     * @param generation the user's generation, read before the token was loaded
+     */
+    public void put(int userId, String secretToken, long generation) {
+        int stripe = stripe(userId);
+        if(generations.get(stripe) != generation) {
+            return;
+        }
+
+        hashes.put(userId, secretToken == null ? NO_USER : hash(secretToken));
+
+        // an invalidation between the check and the put may have missed the new entry
+        if(generations.get(stripe) != generation) {
+            hashes.invalidate(userId);
+        }
+    }
+
+    public void invalidate(int userId) {
+        generations.incrementAndGet(stripe(userId));
+        hashes.invalidate(userId);
+    }
+
+    private static int stripe(int userId) {
+        return (userId ^ (userId >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private byte[] hash(String token) {
+        return hmac.hashString(token.toUpperCase(Locale.ROOT), StandardCharsets.UTF_8).asBytes();
+    }
+}
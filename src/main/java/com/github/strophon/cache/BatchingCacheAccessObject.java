@@ -0,0 +1,134 @@
+package com.github.strophon.cache;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * <code>CacheAccessObject</code> decorator that coalesces <code>checkForIpBan()</code>,
+ * <code>getChallenge()</code> and <code>getUserSessionId()</code> calls. Calls of the same kind
+ * made during one event-loop tick (or within a configurable window) are sent to the underlying
+ * cache as a single multi-key call, and each result is passed back to every handler that asked
+ * for that key. Duplicate keys in a batch are only requested once.
+ * Calls made from any other context than the one that created the instance go straight to the
+ * underlying cache.
+ * IMPORTANT NOTE: the batching state is not thread-safe, and is only used from the Vert.x context
+ * that created the instance.
+ */
+public class BatchingCacheAccessObject extends ForwardingCacheAccessObject {
+    private final Vertx vertx;
+    private final Context context;
+    private final long windowMillis;
+
+    private final Batch<String, Boolean> ipBans;
+    private final Batch<Integer, String> challenges;
+    private final Batch<Integer, String> sessionIds;
+
+    /**
+     * @param vertx the Vert.x instance
+     * @param delegate the underlying cache
+     * @param windowMillis how long to collect calls before sending them, in milliseconds; if 0,
+     *                     calls are collected until the end of the current event-loop tick
+     */
+    public BatchingCacheAccessObject(Vertx vertx, CacheAccessObject delegate, long windowMillis) {
+        super(delegate);
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.windowMillis = windowMillis;
+
+        ipBans = new Batch<>(delegate::checkForIpBan, delegate::checkForIpBans, false);
+        challenges = new Batch<>(delegate::getChallenge, delegate::getChallenges, null);
+        sessionIds = new Batch<>(delegate::getUserSessionId, delegate::getUserSessionIds, null);
+    }
+
+    @Override
+    public void checkForIpBan(String ip, Handler<AsyncResult<Boolean>> handler) {
+        ipBans.add(ip, handler);
+    }
+
+    @Override
+    public void getChallenge(int userId, Handler<AsyncResult<String>> handler) {
+        challenges.add(userId, handler);
+    }
+
+    @Override
+    public void getUserSessionId(int userId, Handler<AsyncResult<String>> handler) {
+        sessionIds.add(userId, handler);
+    }
+
+    private final class Batch<K, V> {
+        private final BiConsumer<K, Handler<AsyncResult<V>>> single;
+        private final BiConsumer<Collection<K>, Handler<AsyncResult<Map<K, V>>>> multi;
+        private final V missing;
+
+        private Map<K, List<Handler<AsyncResult<V>>>> pending = new LinkedHashMap<>();
+        private boolean scheduled;
+
+        private Batch(BiConsumer<K, Handler<AsyncResult<V>>> single,
+                      BiConsumer<Collection<K>, Handler<AsyncResult<Map<K, V>>>> multi,
+                      V missing) {
+            this.single = single;
+            this.multi = multi;
+            this.missing = missing;
+        }
+
+        private void add(K key, Handler<AsyncResult<V>> handler) {
+            if(Vertx.currentContext() != context) {
+                single.accept(key, handler);
+                return;
+            }
+
+            pending.computeIfAbsent(key, k -> new ArrayList<>(1)).add(handler);
+
+            if(!scheduled) {
+                scheduled = true;
+                if(windowMillis > 0) {
+                    vertx.setTimer(windowMillis, id -> flush());
+                } else {
+                    context.runOnContext(v -> flush());
+                }
+            }
+        }
+
+        private void flush() {
+            scheduled = false;
+
+            Map<K, List<Handler<AsyncResult<V>>>> batch = pending;
+            pending = new LinkedHashMap<>();
+
+            // a lone key doesn't need the multi-key call
+            if(batch.size() == 1) {
+                Map.Entry<K, List<Handler<AsyncResult<V>>>> entry =
+                        batch.entrySet().iterator().next();
+                single.accept(entry.getKey(), res -> deliver(entry.getValue(), res));
+                return;
+            }
+
+            multi.accept(new ArrayList<>(batch.keySet()), res -> {
+                for(Map.Entry<K, List<Handler<AsyncResult<V>>>> entry : batch.entrySet()) {
+                    if(res.failed()) {
+                        deliver(entry.getValue(), Future.failedFuture(res.cause()));
+                    } else {
+                        V value = res.result().getOrDefault(entry.getKey(), missing);
+                        deliver(entry.getValue(), Future.succeededFuture(value));
+                    }
+                }
+            });
+        }
+
+        private void deliver(List<Handler<AsyncResult<V>>> handlers, AsyncResult<V> res) {
+            for(Handler<AsyncResult<V>> handler : handlers) {
+                handler.handle(res);
+            }
+        }
+    }
+}
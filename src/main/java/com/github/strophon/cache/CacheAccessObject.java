@@ -5,6 +5,7 @@ import io.vertx.core.Handler;
 import io.vertx.ext.auth.ecdsa.EcdsaAuthCache;
 
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.Map;
 
 public interface CacheAccessObject extends EcdsaAuthCache, Closeable {
@@ -15,6 +16,29 @@ public interface CacheAccessObject extends EcdsaAuthCache, Closeable {
 
     void logIpForPotentialBan(String ip, Handler<AsyncResult<Integer>> handler);
 
+    /**
+     * Adds several failures for an IP at once, for callers that aggregate failures locally before
+     * flushing them. The default implementation logs each failure separately; implementations
+     * backed by a remote store should override it with a single increment-by-count call.
+     * @param ip the IP address, in <code>String</code> form
+     * @param count the number of failures to add
+     * @param handler receives the IP's failure count after the update
+     */
+    default void logIpForPotentialBan(String ip, int count,
+                                      Handler<AsyncResult<Integer>> handler) {
+        if(count <= 1) {
+            logIpForPotentialBan(ip, handler);
+        } else {
+            logIpForPotentialBan(ip, res -> {
+                if(res.failed()) {
+                    handler.handle(res);
+                } else {
+                    logIpForPotentialBan(ip, count - 1, handler);
+                }
+            });
+        }
+    }
+
 
     void setChallenge(int userId, String challenge, Handler<AsyncResult<String>> handler);
 
@@ -32,6 +56,26 @@ public interface CacheAccessObject extends EcdsaAuthCache, Closeable {
     void getAllUserSessionIds(Handler<AsyncResult<Map<Integer, String>>> handler);
 
 
+    // Multi-key variants used by BatchingCacheAccessObject. The defaults issue one call per key;
+    // implementations backed by a remote store should override them with a single pipelined
+    // multi-get. Missing keys map to null (or false, for IP bans).
+
+    default void checkForIpBans(Collection<String> ips,
+                                Handler<AsyncResult<Map<String, Boolean>>> handler) {
+        MultiGet.fanOut(ips, this::checkForIpBan, handler);
+    }
+
+    default void getChallenges(Collection<Integer> userIds,
+                               Handler<AsyncResult<Map<Integer, String>>> handler) {
+        MultiGet.fanOut(userIds, this::getChallenge, handler);
+    }
+
+    default void getUserSessionIds(Collection<Integer> userIds,
+                                   Handler<AsyncResult<Map<Integer, String>>> handler) {
+        MultiGet.fanOut(userIds, this::getUserSessionId, handler);
+    }
+
+
     void addEmailToken(int userId, String token, Handler<AsyncResult<String>> handler);
     void getEmailToken(int userId, Handler<AsyncResult<String>> handler);
     void removeEmailToken(int userId, Handler<AsyncResult<Long>> handler);
@@ -0,0 +1,128 @@
+package com.github.strophon.cache;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <code>CacheAccessObject</code> that forwards every call to another one. Decorators extend this
+ * and override only the calls they change.
+ */
+public abstract class ForwardingCacheAccessObject implements CacheAccessObject {
+    protected final CacheAccessObject delegate;
+
+    protected ForwardingCacheAccessObject(CacheAccessObject delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public int getIpErrorThreshold() {
+        return delegate.getIpErrorThreshold();
+    }
+
+    @Override
+    public void checkForIpBan(String ip, Handler<AsyncResult<Boolean>> handler) {
+        delegate.checkForIpBan(ip, handler);
+    }
+
+    @Override
+    public void checkForIpBans(Collection<String> ips,
+                               Handler<AsyncResult<Map<String, Boolean>>> handler) {
+        delegate.checkForIpBans(ips, handler);
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, Handler<AsyncResult<Integer>> handler) {
+        delegate.logIpForPotentialBan(ip, handler);
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, int count, Handler<AsyncResult<Integer>> handler) {
+        delegate.logIpForPotentialBan(ip, count, handler);
+    }
+
+    @Override
+    public void setChallenge(int userId, String challenge, Handler<AsyncResult<String>> handler) {
+        delegate.setChallenge(userId, challenge, handler);
+    }
+
+    @Override
+    public void getChallenge(int userId, Handler<AsyncResult<String>> handler) {
+        delegate.getChallenge(userId, handler);
+    }
+
+    @Override
+    public void getChallenges(Collection<Integer> userIds,
+                              Handler<AsyncResult<Map<Integer, String>>> handler) {
+        delegate.getChallenges(userIds, handler);
+    }
+
+    @Override
+    public void removeChallenge(int userId, Handler<AsyncResult<Void>> handler) {
+        delegate.removeChallenge(userId, handler);
+    }
+
+    @Override
+    public void setUserSessionId(int userId, String sessionId,
+                                 Handler<AsyncResult<String>> handler) {
+        delegate.setUserSessionId(userId, sessionId, handler);
+    }
+
+    @Override
+    public void getUserSessionId(int userId, Handler<AsyncResult<String>> handler) {
+        delegate.getUserSessionId(userId, handler);
+    }
+
+    @Override
+    public void getUserSessionIds(Collection<Integer> userIds,
+                                  Handler<AsyncResult<Map<Integer, String>>> handler) {
+        delegate.getUserSessionIds(userIds, handler);
+    }
+
+    @Override
+    public void removeUserSessionId(int userId, Handler<AsyncResult<Long>> handler) {
+        delegate.removeUserSessionId(userId, handler);
+    }
+
+    @Override
+    public void getAllUserSessionIds(Handler<AsyncResult<Map<Integer, String>>> handler) {
+        delegate.getAllUserSessionIds(handler);
+    }
+
+    @Override
+    public void addEmailToken(int userId, String token, Handler<AsyncResult<String>> handler) {
+        delegate.addEmailToken(userId, token, handler);
+    }
+
+    @Override
+    public void getEmailToken(int userId, Handler<AsyncResult<String>> handler) {
+        delegate.getEmailToken(userId, handler);
+    }
+
+    @Override
+    public void removeEmailToken(int userId, Handler<AsyncResult<Long>> handler) {
+        delegate.removeEmailToken(userId, handler);
+    }
+
+    @Override
+    public void pause(Handler<AsyncResult<Void>> handler) {
+        delegate.pause(handler);
+    }
+
+    @Override
+    public void isPaused(Handler<AsyncResult<Boolean>> handler) {
+        delegate.isPaused(handler);
+    }
+
+    @Override
+    public void resume(Handler<AsyncResult<Boolean>> handler) {
+        delegate.resume(handler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
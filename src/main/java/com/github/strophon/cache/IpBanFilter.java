@@ -0,0 +1,249 @@
+package com.github.strophon.cache;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local front for the IP-ban checks in <code>CacheAccessObject</code>. Banned IPs are held in
+ * memory and shared between nodes over the event bus, so requests from banned IPs can be rejected
+ * without a cache round-trip. IPs the cache reported as not banned are remembered for a while
+ * too, so clean traffic only reaches the cache once per IP per check TTL. Failures are counted in
+ * local sliding windows and flushed to the shared cache in aggregate on a timer.
+ * One instance is shared by all verticles in a Vert.x instance (see <code>getShared()</code>), so
+ * the ban threshold applies per node rather than per verticle. Each verticle should consume
+ * <code>BAN_ADDRESS</code> with <code>banLocally()</code>, and call <code>flushIfDue()</code>
+ * periodically.
+ */
+public class IpBanFilter implements Shareable {
+    private static final Logger logger = LoggerFactory.getLogger(IpBanFilter.class);
+
+    public static final String BAN_ADDRESS = "server.ipban";
+
+    private static final String MAP_NAME = "com.github.strophon.cache.IpBanFilter";
+    private static final int WINDOW_BUCKETS = 10;
+
+    private final Vertx vertx;
+    private final CacheAccessObject cache;
+    private final long windowMillis;
+    private final long banMillis;
+    private final long checkTtlMillis;
+    private final long flushIntervalMillis;
+
+    private final Map<String, Long> bannedUntil = new ConcurrentHashMap<>();
+    private final Map<String, Long> checkedUntil = new ConcurrentHashMap<>();
+    private final Map<String, SlidingWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, Integer> unflushed = new ConcurrentHashMap<>();
+    private final AtomicLong lastFlush = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * @param vertx the Vert.x instance
+     * @param cache the shared cache failures are flushed to
+     * @param windowMillis the length of the failure window, in milliseconds
+     * @param banMillis how long a banned IP is rejected locally, in milliseconds
+     * @param checkTtlMillis how long an IP the cache reported as not banned is trusted to stay
+     *                       so, in milliseconds
+     * @param flushIntervalMillis how often failures are flushed to the cache, in milliseconds
+     */
+    public IpBanFilter(Vertx vertx, CacheAccessObject cache, long windowMillis, long banMillis,
+                       long checkTtlMillis, long flushIntervalMillis) {
+        this.vertx = vertx;
+        this.cache = cache;
+        this.windowMillis = windowMillis;
+        this.banMillis = banMillis;
+        this.checkTtlMillis = checkTtlMillis;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Retrieves the filter shared by all verticles of this Vert.x instance, creating it if it
+     * doesn't exist yet. The arguments are only used if it doesn't.
+     * @param vertx the Vert.x instance
+     * @param cache the shared cache failures are flushed to
+     * @param windowMillis the length of the failure window, in milliseconds
+     * @param banMillis how long a banned IP is rejected locally, in milliseconds
+     * @param checkTtlMillis how long an IP the cache reported as not banned is trusted to stay
+     *                       so, in milliseconds
+     * @param flushIntervalMillis how often failures are flushed to the cache, in milliseconds
+     * @return the shared filter
+     */
+    public static IpBanFilter getShared(Vertx vertx, CacheAccessObject cache, long windowMillis,
+                                        long banMillis, long checkTtlMillis,
+                                        long flushIntervalMillis) {
+        LocalMap<String, IpBanFilter> map = vertx.sharedData().getLocalMap(MAP_NAME);
+
+        IpBanFilter filter = map.get(MAP_NAME);
+        if(filter == null) {
+            IpBanFilter created = new IpBanFilter(vertx, cache, windowMillis, banMillis,
+                                                  checkTtlMillis, flushIntervalMillis);
+            filter = map.putIfAbsent(MAP_NAME, created);
+            if(filter == null) {
+                filter = created;
+            }
+        }
+
+        return filter;
+    }
+
+    /**
+     * Checks whether this node knows the IP to be banned. A <code>false</code> result does not
+     * mean the shared cache has no ban for the IP.
+     * @param ip the IP address, in <code>String</code> form
+     * @return <code>true</code> if the IP is banned locally
+     */
+    public boolean isBanned(String ip) {
+        Long until = bannedUntil.get(ip);
+        if(until == null) {
+            return false;
+        }
+
+        if(until < System.currentTimeMillis()) {
+            bannedUntil.remove(ip, until);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param ip the IP address, in <code>String</code> form
+     * @return <code>true</code> if the cache reported the IP as not banned within the check TTL,
+     * so it doesn't need to be asked again
+     */
+    public boolean isRecentlyChecked(String ip) {
+        Long until = checkedUntil.get(ip);
+        return until != null && until >= System.currentTimeMillis();
+    }
+
+    /**
+     * Records the cache's answer to <code>checkForIpBan()</code>.
+     * @param ip the IP address, in <code>String</code> form
+     * @param banned whether the cache reported the IP as banned
+     */
+    public void checked(String ip, boolean banned) {
+        if(banned) {
+            ban(ip);
+        } else {
+            checkedUntil.put(ip, System.currentTimeMillis() + checkTtlMillis);
+        }
+    }
+
+    /**
+     * Bans an IP on every node.
+     * @param ip the IP address, in <code>String</code> form
+     */
+    public void ban(String ip) {
+        banLocally(ip);
+        vertx.eventBus().publish(BAN_ADDRESS, ip);
+    }
+
+    /**
+     * Bans an IP on this node only, e.g. on receiving a ban published on <code>BAN_ADDRESS</code>.
+     * @param ip the IP address, in <code>String</code> form
+     */
+    public void banLocally(String ip) {
+        bannedUntil.put(ip, System.currentTimeMillis() + banMillis);
+        checkedUntil.remove(ip);
+    }
+
+    /**
+     * Records a failed request from an IP, banning it once the failures in the current window
+     * reach the cache's error threshold.
+     * @param ip the IP address, in <code>String</code> form
+     */
+    public void logFailure(String ip) {
+        long now = System.currentTimeMillis();
+
+        int count = windows.computeIfAbsent(ip, k -> new SlidingWindow()).increment(now);
+        unflushed.merge(ip, 1, Integer::sum);
+
+        if(count >= cache.getIpErrorThreshold() && !isBanned(ip)) {
+            logger.info("Banning IP " + ip + " after " + count + " failures on this node");
+            ban(ip);
+        }
+    }
+
+    /**
+     * Calls <code>flush()</code> if no verticle has done so within the flush interval, so that
+     * every verticle can run the same timer without multiplying the cache traffic.
+     */
+    public void flushIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastFlush.get();
+
+        if(now - last >= flushIntervalMillis && lastFlush.compareAndSet(last, now)) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the failures counted since the last flush to the shared cache, and drops windows,
+     * bans and checks that have expired.
+     */
+    public void flush() {
+        int threshold = cache.getIpErrorThreshold();
+
+        for(String ip : unflushed.keySet()) {
+            Integer count = unflushed.remove(ip);
+            if(count == null) {
+                continue;
+            }
+
+            cache.logIpForPotentialBan(ip, count, res -> {
+                if(res.succeeded() && res.result() != null
+                        && res.result() >= threshold && !isBanned(ip)) {
+                    ban(ip);
+                }
+            });
+        }
+
+        long now = System.currentTimeMillis();
+
+        windows.values().removeIf(window -> window.isEmpty(now));
+        bannedUntil.values().removeIf(until -> until < now);
+        checkedUntil.values().removeIf(until -> until < now);
+    }
+
+    /**
+     * Failure counter over the last <code>windowMillis</code>, kept as a ring of equally-sized
+     * buckets.
+     */
+    private class SlidingWindow {
+        private final int[] counts = new int[WINDOW_BUCKETS];
+        private final long[] starts = new long[WINDOW_BUCKETS];
+
+        private synchronized int increment(long now) {
+            long bucketMillis = Math.max(1, windowMillis / WINDOW_BUCKETS);
+            long start = now - now % bucketMillis;
+            int index = (int) ((now / bucketMillis) % WINDOW_BUCKETS);
+
+            if(starts[index] != start) {
+                starts[index] = start;
+                counts[index] = 0;
+            }
+            counts[index]++;
+
+            return total(now);
+        }
+
+        private synchronized int total(long now) {
+            int total = 0;
+            for(int i = 0; i < WINDOW_BUCKETS; i++) {
+                if(now - starts[i] < windowMillis) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        private boolean isEmpty(long now) {
+            return total(now) == 0;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.github.strophon.cache;
+
+import com.github.strophon.util.TimingWheel;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-JVM <code>CacheAccessObject</code>, for single-node deployments and tests. Values are held
+ * in <code>ConcurrentHashMap</code>s; expiring values (IP failure counts, challenges, session IDs
+ * and email tokens) are removed by a hierarchical <code>TimingWheel</code>, and each of those
+ * maps is bounded to a maximum number of entries. Handlers are completed on the caller's
+ * context, as with a remote cache client.
+ * Nothing is shared between nodes, so this implementation must not be used in a cluster.
+ */
+public class LocalCacheAccessObject implements CacheAccessObject {
+    private static final long TICK_MILLIS = 100;
+
+    private final Vertx vertx;
+    private final int ipErrorThreshold;
+    private final int maxEntries;
+    private final long timerId;
+
+    private long ipFailureTtl = 3_600_000;
+    private long challengeTtl = 60_000;
+    private long emailTokenTtl = 86_400_000;
+    private long sessionIdTtl = 86_400_000;
+
+    private final ConcurrentMap<String, Entry<String, AtomicInteger>> ipFailures =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Entry<Integer, String>> challenges =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Entry<Integer, String>> emailTokens =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Entry<Integer, String>> sessionIds =
+            new ConcurrentHashMap<>();
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    private final TimingWheel<Entry<?, ?>> wheel;
+
+    public LocalCacheAccessObject(Vertx vertx, int ipErrorThreshold, int maxEntries) {
+        this.vertx = vertx;
+        this.ipErrorThreshold = ipErrorThreshold;
+        this.maxEntries = maxEntries;
+
+        wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis(), Entry::expire);
+        timerId = vertx.setPeriodic(TICK_MILLIS, id -> wheel.advance(System.currentTimeMillis()));
+    }
+
+    public LocalCacheAccessObject setIpFailureTtl(long ipFailureTtl) {
+        this.ipFailureTtl = ipFailureTtl;
+        return this;
+    }
+
+    public LocalCacheAccessObject setChallengeTtl(long challengeTtl) {
+        this.challengeTtl = challengeTtl;
+        return this;
+    }
+
+    public LocalCacheAccessObject setEmailTokenTtl(long emailTokenTtl) {
+        this.emailTokenTtl = emailTokenTtl;
+        return this;
+    }
+
+    public LocalCacheAccessObject setSessionIdTtl(long sessionIdTtl) {
+        this.sessionIdTtl = sessionIdTtl;
+        return this;
+    }
+
+    @Override
+    public int getIpErrorThreshold() {
+        return ipErrorThreshold;
+    }
+
+    @Override
+    public void checkForIpBan(String ip, Handler<AsyncResult<Boolean>> handler) {
+        AtomicInteger count = get(ipFailures, ip);
+        complete(handler, count != null && count.get() >= ipErrorThreshold);
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, Handler<AsyncResult<Integer>> handler) {
+        logIpForPotentialBan(ip, 1, handler);
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, int count, Handler<AsyncResult<Integer>> handler) {
+        if(isFull(ipFailures, ip)) {
+            fail(handler);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean[] created = new boolean[1];
+
+        Entry<String, AtomicInteger> entry = ipFailures.compute(ip, (k, existing) -> {
+            if(existing == null || existing.isExpired(now)) {
+                created[0] = true;
+                return new Entry<>(ipFailures, k, new AtomicInteger(), now + ipFailureTtl);
+            }
+            return existing;
+        });
+
+        if(created[0]) {
+            wheel.schedule(entry, entry.deadline);
+        }
+
+        complete(handler, entry.value.addAndGet(count));
+    }
+
+    @Override
+    public void setChallenge(int userId, String challenge, Handler<AsyncResult<String>> handler) {
+        put(challenges, userId, challenge, challengeTtl, handler);
+    }
+
+    @Override
+    public void getChallenge(int userId, Handler<AsyncResult<String>> handler) {
+        complete(handler, get(challenges, userId));
+    }
+
+    @Override
+    public void removeChallenge(int userId, Handler<AsyncResult<Void>> handler) {
+        challenges.remove(userId);
+        complete(handler, null);
+    }
+
+    @Override
+    public void setUserSessionId(int userId, String sessionId,
+                                 Handler<AsyncResult<String>> handler) {
+        put(sessionIds, userId, sessionId, sessionIdTtl, handler);
+    }
+
+    @Override
+    public void getUserSessionId(int userId, Handler<AsyncResult<String>> handler) {
+        complete(handler, get(sessionIds, userId));
+    }
+
+    @Override
+    public void removeUserSessionId(int userId, Handler<AsyncResult<Long>> handler) {
+        complete(handler, sessionIds.remove(userId) != null ? 1L : 0L);
+    }
+
+    @Override
+    public void getAllUserSessionIds(Handler<AsyncResult<Map<Integer, String>>> handler) {
+        long now = System.currentTimeMillis();
+
+        Map<Integer, String> result = new HashMap<>();
+        for(Entry<Integer, String> entry : sessionIds.values()) {
+            if(!entry.isExpired(now)) {
+                result.put(entry.key, entry.value);
+            }
+        }
+
+        complete(handler, result);
+    }
+
+    @Override
+    public void addEmailToken(int userId, String token, Handler<AsyncResult<String>> handler) {
+        put(emailTokens, userId, token, emailTokenTtl, handler);
+    }
+
+    @Override
+    public void getEmailToken(int userId, Handler<AsyncResult<String>> handler) {
+        complete(handler, get(emailTokens, userId));
+    }
+
+    @Override
+    public void removeEmailToken(int userId, Handler<AsyncResult<Long>> handler) {
+        complete(handler, emailTokens.remove(userId) != null ? 1L : 0L);
+    }
+
+    @Override
+    public void pause(Handler<AsyncResult<Void>> handler) {
+        paused.set(true);
+        complete(handler, null);
+    }
+
+    @Override
+    public void isPaused(Handler<AsyncResult<Boolean>> handler) {
+        complete(handler, paused.get());
+    }
+
+    @Override
+    public void resume(Handler<AsyncResult<Boolean>> handler) {
+        complete(handler, paused.getAndSet(false));
+    }
+
+    @Override
+    public void close() {
+        vertx.cancelTimer(timerId);
+    }
+
+    private <K> void put(ConcurrentMap<K, Entry<K, String>> map, K key, String value, long ttl,
+                         Handler<AsyncResult<String>> handler) {
+        if(isFull(map, key)) {
+            fail(handler);
+            return;
+        }
+
+        Entry<K, String> entry = new Entry<>(map, key, value, System.currentTimeMillis() + ttl);
+        map.put(key, entry);
+        wheel.schedule(entry, entry.deadline);
+
+        complete(handler, value);
+    }
+
+    // the wheel only expires entries once per tick, so check the deadline on reads too
+    private static <K, V> V get(ConcurrentMap<K, Entry<K, V>> map, K key) {
+        Entry<K, V> entry = map.get(key);
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry.value;
+    }
+
+    private boolean isFull(Map<?, ?> map, Object key) {
+        return map.size() >= maxEntries && !map.containsKey(key);
+    }
+
+    private static <T> void complete(Handler<AsyncResult<T>> handler, T result) {
+        respond(handler, Future.succeededFuture(result));
+    }
+
+    private static <T> void fail(Handler<AsyncResult<T>> handler) {
+        respond(handler, Future.failedFuture(new IllegalStateException("Local cache is full")));
+    }
+
+    private static <T> void respond(Handler<AsyncResult<T>> handler, AsyncResult<T> res) {
+        Context context = Vertx.currentContext();
+        if(context == null) {
+            handler.handle(res);
+        } else {
+            context.runOnContext(v -> handler.handle(res));
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private final ConcurrentMap<K, Entry<K, V>> map;
+        private final K key;
+        private final V value;
+        private final long deadline;
+
+        private Entry(ConcurrentMap<K, Entry<K, V>> map, K key, V value, long deadline) {
+            this.map = map;
+            this.key = key;
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        private boolean isExpired(long now) {
+            return deadline <= now;
+        }
+
+        // only removes the mapping if it hasn't been replaced since this entry was scheduled
+        private void expire() {
+            map.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.strophon.cache;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Default implementation of the multi-key <code>CacheAccessObject</code> calls, in terms of the
+ * single-key ones.
+ */
+final class MultiGet {
+    private MultiGet() { }
+
+    static <K, V> void fanOut(Collection<K> keys, BiConsumer<K, Handler<AsyncResult<V>>> single,
+                              Handler<AsyncResult<Map<K, V>>> handler) {
+        if(keys.isEmpty()) {
+            handler.handle(Future.succeededFuture(new HashMap<>()));
+            return;
+        }
+
+        // single-key calls may complete on different threads
+        Map<K, V> results = new HashMap<>();
+        int[] remaining = { keys.size() };
+        boolean[] failed = { false };
+
+        for(K key : keys) {
+            single.accept(key, res -> {
+                boolean done;
+                synchronized(results) {
+                    if(failed[0]) {
+                        return;
+                    }
+
+                    if(res.failed()) {
+                        failed[0] = true;
+                        done = false;
+                    } else {
+                        results.put(key, res.result());
+                        done = --remaining[0] == 0;
+                    }
+                }
+
+                if(res.failed()) {
+                    handler.handle(Future.failedFuture(res.cause()));
+                } else if(done) {
+                    handler.handle(Future.succeededFuture(results));
+                }
+            });
+        }
+    }
+}
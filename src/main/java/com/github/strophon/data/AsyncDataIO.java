@@ -0,0 +1,45 @@
+package com.github.strophon.data;
+
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.transfer.User;
+import io.vertx.core.Future;
+
+import java.util.List;
+
+/**
+ * Asynchronous counterpart of <code>DataIO</code>, for implementations backed by a non-blocking
+ * database driver. Each call returns a <code>Future</code> instead of blocking the calling thread;
+ * calls on one instance belong to the same transaction, and must not overlap.
+ * Wrap an instance in a <code>FiberDataIO</code> to return it from
+ * <code>Instantiator.getDataIoWithCache()</code>.
+ */
+public interface AsyncDataIO {
+
+    Future<Void> commitSql();
+
+    Future<Void> commitSql(boolean force);
+
+    Future<Void> close();
+
+    Future<User> getUser(int id, boolean lock);
+
+    Future<User> getUserByEmail(String email);
+
+    Future<Void> setUserEmailConfirmed(int userId);
+
+    Future<Void> addEvents(List<Event> events);
+
+    Future<Void> markEventSeen(int eventId);
+
+    Future<List<? extends Event>> getUnseenEventsSinceFirstUnseen(int userId);
+
+    Future<Boolean> isNameUsed(String name);
+
+    Future<Boolean> isEmailUsed(String email);
+
+    Future<Void> addUser(User user);
+
+    Future<Void> updateUser(User user);
+
+    Future<Void> deleteUser(User user);
+}
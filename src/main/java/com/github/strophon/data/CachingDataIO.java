@@ -0,0 +1,115 @@
+package com.github.strophon.data;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.github.strophon.data.transfer.User;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <code>DataIO</code> decorator that serves unlocked <code>getUser()</code> calls from a shared
+ * <code>UserCache</code>. Locked reads always go to the database, as do reads of users this
+ * instance has changed in its current transaction. Changed users are invalidated when they are
+ * changed, and again once the transaction is committed, reset or abandoned.
+ */
+public class CachingDataIO extends ForwardingDataIO {
+    private final UserCache userCache;
+    private final Set<Integer> changedUsers = new HashSet<>();
+
+    public CachingDataIO(DataIO delegate, UserCache userCache) {
+        super(delegate);
+        this.userCache = userCache;
+    }
+
+    @Override
+    @Suspendable
+    public User getUser(int id, boolean lock) {
+        if(lock || changedUsers.contains(id)) {
+            return delegate.getUser(id, lock);
+        }
+
+        // waiting for another caller's load would block the event loop, and a fiber can't
+        // suspend inside a loader lambda, so the user is loaded here
+        if(delegate.isNonBlocking()) {
+            User cached = userCache.getIfPresent(id);
+            if(cached != null) {
+                return cached;
+            }
+
+            long version = userCache.getVersion(id);
+            User user = delegate.getUser(id, false);
+            userCache.putIfUnchanged(id, user, version);
+            return user;
+        }
+
+        return userCache.get(id, userId -> delegate.getUser(userId, false));
+    }
+
+    @Override
+    @Suspendable
+    public void setUserEmailConfirmed(int userId) {
+        changed(userId);
+        delegate.setUserEmailConfirmed(userId);
+    }
+
+    @Override
+    @Suspendable
+    public void updateUser(User user) {
+        changed(user.getId());
+        delegate.updateUser(user);
+    }
+
+    @Override
+    @Suspendable
+    public void deleteUser(User user) {
+        changed(user.getId());
+        delegate.deleteUser(user);
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql() {
+        delegate.commitSql();
+        invalidateChanged();
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql(boolean force) {
+        delegate.commitSql(force);
+        invalidateChanged();
+    }
+
+    @Override
+    @Suspendable
+    public boolean reset() {
+        try {
+            return delegate.reset();
+        } finally {
+            invalidateChanged();
+        }
+    }
+
+    @Override
+    @Suspendable
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            invalidateChanged();
+        }
+    }
+
+    private void changed(int userId) {
+        changedUsers.add(userId);
+        userCache.invalidate(userId);
+    }
+
+    // readers may have cached the old user between the change and the commit
+    private void invalidateChanged() {
+        for(int userId : changedUsers) {
+            userCache.invalidate(userId);
+        }
+        changedUsers.clear();
+    }
+}
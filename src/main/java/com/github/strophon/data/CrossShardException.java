@@ -0,0 +1,11 @@
+package com.github.strophon.data;
+
+/**
+ * Thrown by <code>ShardedDataIO</code> when a single transaction tries to lock or write users on
+ * more than one shard.
+ */
+public class CrossShardException extends RuntimeException {
+    public CrossShardException(String message) {
+        super(message);
+    }
+}
@@ -4,7 +4,12 @@ import com.github.strophon.action.output.Event;
 import com.github.strophon.data.transfer.User;
 
 import java.io.Closeable;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiConsumer;
 
 public interface DataIO extends Closeable {
 
@@ -24,6 +29,17 @@ public interface DataIO extends Closeable {
 
     void markEventSeen(int eventId);
 
+    /**
+     * Marks an event as seen by the user it was sent to. Implementations that partition data by
+     * user (e.g. <code>ShardedDataIO</code>) use the user ID to find the event. The default
+     * ignores it.
+     * @param userId the ID of the user the event was sent to
+     * @param eventId the event's ID
+     */
+    default void markEventSeen(int userId, int eventId) {
+        markEventSeen(eventId);
+    }
+
     List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId);
 
     boolean isNameUsed(String name);
@@ -35,4 +51,162 @@ public interface DataIO extends Closeable {
     void updateUser(User user);
 
     void deleteUser(User user);
+
+    /**
+     * Streams the name and email address of every user, to build the in-memory
+     * <code>UniquenessIndex</code>. Only needs to be implemented if
+     * <code>Instantiator.useUniquenessIndex()</code> returns <code>true</code>.
+     * @param consumer receives each user's name and email address
+     */
+    default void forEachNameAndEmail(BiConsumer<String, String> consumer) {
+        throw new UnsupportedOperationException("forEachNameAndEmail() not implemented");
+    }
+
+    /**
+     * Specifies whether this <code>DataIO</code> can be called directly on a fiber without blocking
+     * its event loop (see <code>FiberDataIO</code>). If <code>true</code>, the framework makes its
+     * calls on the fiber instead of offloading them to a worker thread. Default is
+     * <code>false</code>.
+     * @return whether calls are non-blocking
+     */
+    default boolean isNonBlocking() {
+        return false;
+    }
+
+    /**
+     * Prepares this <code>DataIO</code> to be reused by another caller, when it is returned to a
+     * <code>DataIOPool</code>, or by a retried action (see <code>isRetryableFailure()</code>): any
+     * uncommitted changes must be rolled back, and any per-transaction state cleared.
+     * Per-connection state such as prepared statements may be kept.
+     * The default does nothing and returns <code>false</code>, so that pooled instances are closed
+     * rather than reused, and failed actions aren't retried, unless the implementation supports it.
+     * @return whether this <code>DataIO</code> can be reused
+     */
+    default boolean reset() {
+        return false;
+    }
+
+    /**
+     * Checks whether this <code>DataIO</code> is still usable (e.g. whether its connection is
+     * still open), before a <code>DataIOPool</code> hands it out again. Should be cheap, as it is
+     * called on every borrow. Default is <code>true</code>.
+     * @return whether this <code>DataIO</code> is usable
+     */
+    default boolean isHealthy() {
+        return true;
+    }
+
+    /**
+     * Reports how far this <code>DataIO</code>'s database lags behind the primary, for read
+     * replicas used through a <code>ReplicaSet</code>. Default is 0.
+     * @return replication lag, in milliseconds
+     */
+    default long getReplicationLagMillis() {
+        return 0;
+    }
+
+    /**
+     * Fetches and locks several pieces of data in one round-trip, for the batched prefetch of
+     * subsequent actions, and to lock a single action's keys in canonical order (see
+     * <code>Action.getDataKeys()</code>). Keys must be locked in the order given, so that
+     * concurrent transactions can't deadlock. Default is <code>null</code>,
+     * meaning batched fetches aren't supported and each action fetches its own data.
+     * @param keys the keys to fetch, in lock order
+     * @return the fetched data by key (absent keys may be missing), or <code>null</code> if
+     * not supported
+     */
+    default Map<DataKey, Object> fetchAndLock(SortedSet<DataKey> keys) {
+        return null;
+    }
+
+    /**
+     * Checks whether an exception thrown by this <code>DataIO</code> means that its transaction
+     * lost a lock conflict, i.e. a deadlock or a lock wait timeout, so that the action can be run
+     * again after <code>reset()</code> (see <code>ActionExecutor.executeWithRetry()</code>). The
+     * default looks for a <code>VersionConflictException</code>, or for an
+     * <code>SQLException</code> among the exception's causes with an SQLState
+     * of class 40 (transaction rollback) or 55P03 (lock not available), or with MySQL's error code
+     * 1205 (lock wait timeout) or 1213 (deadlock).
+     * @param e the exception
+     * @return whether the failed transaction can be retried
+     */
+    default boolean isRetryableFailure(Exception e) {
+        for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if(cause instanceof VersionConflictException) {
+                return true;
+            }
+            if(cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                String state = sqlException.getSQLState();
+
+                if(state != null && (state.startsWith("40") || state.equals("55P03"))) {
+                    return true;
+                }
+                if(sqlException.getErrorCode() == 1205 || sqlException.getErrorCode() == 1213) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Specifies whether this <code>DataIO</code> implements <code>lockAndValidateVersions()</code>,
+     * so that actions can be executed optimistically (see
+     * <code>Action.supportsOptimisticExecution()</code>). Default is <code>false</code>.
+     * @return whether versions can be validated
+     */
+    default boolean supportsVersionValidation() {
+        return false;
+    }
+
+    /**
+     * Locks the data read without locks by an optimistically executed action, in the order given,
+     * and checks that none of it changed since it was read. Called after the action is performed
+     * and before its changes are written, in the same transaction, so the changes are applied to
+     * the versions the action read. Only called if <code>supportsVersionValidation()</code>
+     * returns <code>true</code>.
+     * @param versions the version read for each key, in lock order
+     * @throws VersionConflictException if a version has changed
+     */
+    default void lockAndValidateVersions(SortedMap<DataKey, Long> versions) {
+        throw new UnsupportedOperationException("lockAndValidateVersions() not implemented");
+    }
+
+    /**
+     * Retrieves an entity from the node's <code>EntityCache</code>, if one is used (see
+     * <code>EntityCachingDataIO</code>), including entities written but not yet committed through
+     * this <code>DataIO</code>. Actions can try this before reading an entity from the database.
+     * IMPORTANT NOTE: cached entities may be slightly stale, so they should only be used for
+     * optimistic execution, whose versions are validated, or for entities only written by this
+     * node. Default is <code>null</code>, for no cache.
+     * @param key the entity's key
+     * @param type the entity's class
+     * @param <T> the entity type
+     * @return a copy of the entity with its version, or <code>null</code> if it isn't cached
+     */
+    default <T> VersionedEntity<T> getCachedEntity(DataKey key, Class<T> type) {
+        return null;
+    }
+
+    /**
+     * Caches an entity just read from the database, for later <code>getCachedEntity()</code>
+     * calls. The default does nothing.
+     * @param key the entity's key
+     * @param version the entity's version
+     * @param entity the entity, which is copied
+     */
+    default void cacheEntity(DataKey key, long version, Object entity) {
+    }
+
+    /**
+     * Caches an entity written in the current transaction, e.g. from
+     * <code>Action.writeChanges()</code>. It is written through to the cache, and other nodes
+     * drop their older versions, once the transaction is committed. The default does nothing.
+     * @param key the entity's key
+     * @param version the entity's new version
+     * @param entity the entity, which is copied
+     */
+    default void cacheWrittenEntity(DataKey key, long version, Object entity) {
+    }
 }
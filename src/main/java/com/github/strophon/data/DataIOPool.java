@@ -0,0 +1,171 @@
+package com.github.strophon.data;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable <code>DataIO</code> instances, so that per-connection state (prepared
+ * statements, caches) survives between requests. <code>borrow()</code> hands out an idle instance
+ * if a healthy one is available, or creates a new one; closing the borrowed instance returns it to
+ * the pool after <code>DataIO.reset()</code>. Instances that fail their health check or reset, or
+ * that would exceed the idle limit, are closed instead.
+ * The most recently returned instances are handed out first, so that rarely used ones age out.
+ */
+public class DataIOPool {
+    private static final Logger logger = LoggerFactory.getLogger(DataIOPool.class);
+
+    private final Supplier<DataIO> factory;
+    private final int maxIdle;
+
+    private final Deque<DataIO> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param factory creates new <code>DataIO</code> instances
+     *                (e.g. <code>Instantiator.getDataIoWithCache()</code>)
+     * @param maxIdle maximum number of idle instances to keep
+     */
+    public DataIOPool(Supplier<DataIO> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Borrows a <code>DataIO</code> from the pool. The caller must close it when done, which
+     * returns it to the pool.
+     * @return a pooled <code>DataIO</code>
+     */
+    public DataIO borrow() {
+        DataIO dio;
+        while((dio = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+
+            if(isHealthy(dio)) {
+                break;
+            }
+            destroy(dio);
+        }
+
+        if(dio == null) {
+            dio = factory.get();
+            created.increment();
+        }
+
+        borrowed.increment();
+        active.incrementAndGet();
+
+        return new PooledDataIO(dio);
+    }
+
+    private void giveBack(DataIO dio) {
+        active.decrementAndGet();
+
+        boolean reusable;
+        try {
+            reusable = !closed && dio.reset();
+        } catch(Exception e) {
+            logger.warn("Failed to reset pooled DataIO; closing it", e);
+            reusable = false;
+        }
+
+        if(reusable && idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(dio);
+
+            // close() may have drained the pool since we checked
+            if(closed && idle.remove(dio)) {
+                idleCount.decrementAndGet();
+                destroy(dio);
+            }
+        } else {
+            if(reusable) {
+                idleCount.decrementAndGet();
+            }
+            destroy(dio);
+        }
+    }
+
+    private boolean isHealthy(DataIO dio) {
+        try {
+            return dio.isHealthy();
+        } catch(Exception e) {
+            logger.warn("Health check of pooled DataIO failed", e);
+            return false;
+        }
+    }
+
+    private void destroy(DataIO dio) {
+        destroyed.increment();
+        try {
+            dio.close();
+        } catch(Exception e) {
+            logger.warn("Failed to close pooled DataIO", e);
+        }
+    }
+
+    /**
+     * Closes all idle instances. Instances still borrowed are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+
+        DataIO dio;
+        while((dio = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            destroy(dio);
+        }
+    }
+
+    public int getIdleCount() {
+        return Math.max(idleCount.get(), 0);
+    }
+
+    /**
+     * @return the number of instances currently borrowed
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowed.sum();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    /**
+     * @return the number of instances closed by the pool, because they were unhealthy, couldn't be
+     * reset, or weren't needed
+     */
+    public long getDestroyedCount() {
+        return destroyed.sum();
+    }
+
+    private final class PooledDataIO extends ForwardingDataIO {
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private PooledDataIO(DataIO delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void close() {
+            if(returned.compareAndSet(false, true)) {
+                giveBack(delegate);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.strophon.data;
+
+/**
+ * Identifies one piece of data (typically a row) that an action fetches and locks, e.g.
+ * <code>new DataKey("user", 42)</code>. Keys are ordered by type, then ID; locking keys in that
+ * order prevents deadlocks between transactions that lock overlapping sets.
+ */
+public final class DataKey implements Comparable<DataKey> {
+    private final String type;
+    private final long id;
+
+    public DataKey(String type, long id) {
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public int compareTo(DataKey other) {
+        int result = type.compareTo(other.type);
+        return result != 0 ? result : Long.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof DataKey)) {
+            return false;
+        }
+        DataKey other = (DataKey) o;
+        return id == other.id && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + id;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.strophon.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, least-recently-used cache of versioned entities by key, shared by all
+ * <code>EntityCachingDataIO</code>s of a node. Entities are stored serialized with GSON, so every
+ * read returns a fresh copy that the caller may modify freely.
+ * Entries only ever move forward: an entity is not cached if a newer version of it is already
+ * known. When a newer version is committed, it is broadcast on the event bus (cluster-wide, if
+ * Vert.x is clustered), and every node drops older versions of the entity; the broadcast version
+ * is remembered for a short time in a separate bounded map, so that a read that started before
+ * the change can't cache the old version afterwards without pushing cached entities out. Between
+ * the commit and the broadcast's arrival, other nodes may still read the old
+ * version, so reads served from the cache must either be validated (see
+ * <code>Action.supportsOptimisticExecution()</code>) or be of entities owned by this node.
+ */
+public class EntityCache {
+    public static final String INVALIDATION_ADDRESS = "entity-cache.invalidate";
+
+    private static final Gson GSON = new Gson();
+
+    private final Cache<DataKey, Entry> entries;
+    private final Cache<DataKey, Long> newestVersions; // known versions of uncached entities
+    private volatile Vertx vertx;
+
+    /**
+     * Creates a cache whose invalidated versions are remembered for 10 seconds.
+     * @param maxEntries maximum number of entities to cache
+     */
+    public EntityCache(long maxEntries) {
+        this(maxEntries, 10_000);
+    }
+
+    /**
+     * @param maxEntries maximum number of entities to cache, and of invalidated versions to
+     *                   remember
+     * @param invalidationTtlMillis how long an invalidated version is remembered, in
+     *                              milliseconds; reads that take longer than this may cache an
+     *                              entity that has been invalidated meanwhile
+     */
+    public EntityCache(long maxEntries, long invalidationTtlMillis) {
+        entries = CacheBuilder.newBuilder()
+                              .maximumSize(maxEntries)
+                              .recordStats()
+                              .build();
+        newestVersions = CacheBuilder.newBuilder()
+                                     .expireAfterWrite(invalidationTtlMillis,
+                                                       TimeUnit.MILLISECONDS)
+                                     .maximumSize(maxEntries)
+                                     .build();
+    }
+
+    /**
+     * Starts receiving other nodes' version broadcasts, and sending this node's. Only the first
+     * call has any effect.
+     * @param vertx the Vert.x instance whose event bus carries the broadcasts
+     */
+    public synchronized void listen(Vertx vertx) {
+        if(this.vertx != null) {
+            return;
+        }
+        this.vertx = vertx;
+
+        vertx.eventBus().<JsonObject>consumer(INVALIDATION_ADDRESS, msg -> {
+            JsonObject body = msg.body();
+            invalidate(new DataKey(body.getString("type"), body.getLong("id")),
+                       body.getLong("version"));
+        });
+    }
+
+    /**
+     * @param key the entity's key
+     * @param type the entity's class
+     * @param <T> the entity type
+     * @return a copy of the cached entity with its version, or <code>null</code> if it isn't
+     * cached
+     */
+    public <T> VersionedEntity<T> get(DataKey key, Class<T> type) {
+        Entry entry = entries.getIfPresent(key);
+        if(entry == null) {
+            return null;
+        }
+        return new VersionedEntity<>(GSON.fromJson(entry.json, type), entry.version);
+    }
+
+    /**
+     * Caches an entity read from the database, unless a newer version is already known.
+     * @param key the entity's key
+     * @param version the entity's version
+     * @param entity the entity, which is copied
+     */
+    public void put(DataKey key, long version, Object entity) {
+        put(key, Entry.of(version, entity));
+    }
+
+    // an entry only replaces an older one, and is dropped if a newer version is known
+    void put(DataKey key, Entry entry) {
+        if(isInvalidated(key, entry.version)) {
+            return;
+        }
+
+        entries.asMap().merge(key, entry, (old, neu) -> neu.version > old.version ? neu : old);
+
+        // an invalidation between the check and the put may have missed the new entry
+        if(isInvalidated(key, entry.version)) {
+            entries.asMap().remove(key, entry);
+        }
+    }
+
+    private boolean isInvalidated(DataKey key, long version) {
+        Long newest = newestVersions.getIfPresent(key);
+        return newest != null && newest > version;
+    }
+
+    /**
+     * Caches an entity written by a committed transaction, and broadcasts its version so that
+     * other nodes drop older versions.
+     * @param key the entity's key
+     * @param entry the entity's new version
+     */
+    void committed(DataKey key, Entry entry) {
+        put(key, entry);
+
+        Vertx vertx = this.vertx;
+        if(vertx != null) {
+            vertx.eventBus().publish(INVALIDATION_ADDRESS,
+                    new JsonObject().put("type", key.getType())
+                                    .put("id", key.getId())
+                                    .put("version", entry.version));
+        }
+    }
+
+    /**
+     * Drops versions of an entity older than the given one. Nothing changes if the given version
+     * is cached (e.g. when this node receives its own broadcast).
+     * @param key the entity's key
+     * @param version the entity's newest known version
+     */
+    public void invalidate(DataKey key, long version) {
+        newestVersions.asMap().merge(key, version, Math::max);
+        entries.asMap().computeIfPresent(key, (k, entry) -> entry.version < version ? null : entry);
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public CacheStats getStats() {
+        return entries.stats();
+    }
+
+    static final class Entry {
+        final long version;
+        final String json;
+
+        Entry(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        static Entry of(long version, Object entity) {
+            return new Entry(version, GSON.toJson(entity));
+        }
+    }
+}
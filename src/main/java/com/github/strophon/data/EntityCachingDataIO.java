@@ -0,0 +1,75 @@
+package com.github.strophon.data;
+
+import com.google.gson.Gson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <code>DataIO</code> decorator that serves <code>getCachedEntity()</code> from a shared
+ * <code>EntityCache</code>. Entities written in the current transaction are held back until it
+ * is committed, and only then written through to the cache and broadcast to other nodes; until
+ * then, this instance alone sees them. They are discarded if the transaction is reset or
+ * abandoned.
+ */
+public class EntityCachingDataIO extends ForwardingDataIO {
+    private static final Gson GSON = new Gson();
+
+    private final EntityCache entityCache;
+    private final Map<DataKey, EntityCache.Entry> written = new LinkedHashMap<>();
+
+    public EntityCachingDataIO(DataIO delegate, EntityCache entityCache) {
+        super(delegate);
+        this.entityCache = entityCache;
+    }
+
+    @Override
+    public <T> VersionedEntity<T> getCachedEntity(DataKey key, Class<T> type) {
+        EntityCache.Entry entry = written.get(key);
+        if(entry != null) {
+            return new VersionedEntity<>(GSON.fromJson(entry.json, type), entry.version);
+        }
+        return entityCache.get(key, type);
+    }
+
+    @Override
+    public void cacheEntity(DataKey key, long version, Object entity) {
+        entityCache.put(key, version, entity);
+    }
+
+    @Override
+    public void cacheWrittenEntity(DataKey key, long version, Object entity) {
+        written.put(key, EntityCache.Entry.of(version, entity));
+    }
+
+    @Override
+    public void commitSql() {
+        delegate.commitSql();
+        committed();
+    }
+
+    @Override
+    public void commitSql(boolean force) {
+        delegate.commitSql(force);
+        committed();
+    }
+
+    @Override
+    public boolean reset() {
+        written.clear();
+        return delegate.reset();
+    }
+
+    @Override
+    public void close() {
+        written.clear();
+        delegate.close();
+    }
+
+    private void committed() {
+        for(Map.Entry<DataKey, EntityCache.Entry> entry : written.entrySet()) {
+            entityCache.committed(entry.getKey(), entry.getValue());
+        }
+        written.clear();
+    }
+}
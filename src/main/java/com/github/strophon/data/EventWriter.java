@@ -0,0 +1,217 @@
+package com.github.strophon.data;
+
+import com.github.strophon.action.output.Event;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Collects events and persists them in batches, so that many small writes (e.g. login events
+ * during a login storm) become a single multi-row <code>addEvents()</code> call and a single
+ * commit. A batch is flushed when it reaches the configured size or when the flush timer fires,
+ * whichever comes first.
+ * A failed batch is retried with exponential backoff, up to the configured number of attempts.
+ * If it still fails, each <code>write()</code> in it is written in a transaction of its own, so
+ * that one bad row only loses the events written with it.
+ * IMPORTANT NOTE: instances are not thread-safe, and must only be used from the Vert.x context
+ * that created them.
+ */
+public class EventWriter {
+    private static final Logger logger = LoggerFactory.getLogger(EventWriter.class);
+
+    /**
+     * Durability guarantee offered to callers of <code>write()</code>.
+     */
+    public enum Durability {
+        /**
+         * Caller continues immediately; buffered events may be lost if the node dies before the
+         * next flush, or if their batch fails every attempt.
+         */
+        BUFFERED,
+        /**
+         * Caller waits until the batch containing its events has been committed.
+         */
+        COMMITTED
+    }
+
+    private final Vertx vertx;
+    private final Supplier<DataIO> dioSupplier;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long timerId;
+
+    private List<Write> pending = new ArrayList<>();
+    private int pendingEvents;
+
+    private int inFlight; // batches being written or waiting to be retried
+    private final List<Promise<Void>> closing = new ArrayList<>();
+
+    public EventWriter(Vertx vertx, Supplier<DataIO> dioSupplier,
+                       int batchSize, long flushIntervalMillis) {
+        this(vertx, dioSupplier, batchSize, flushIntervalMillis, 5, 100);
+    }
+
+    /**
+     * @param vertx the Vert.x instance
+     * @param dioSupplier opens the <code>DataIO</code> each batch is written with
+     * @param batchSize the number of events that triggers a flush
+     * @param flushIntervalMillis the maximum time events wait before being flushed, in
+     *                            milliseconds
+     * @param maxAttempts the number of times a failed batch is written before its writes are
+     *                    tried one by one
+     * @param retryBackoffMillis the wait before the first retry, in milliseconds; it doubles with
+     *                           each attempt
+     */
+    public EventWriter(Vertx vertx, Supplier<DataIO> dioSupplier, int batchSize,
+                       long flushIntervalMillis, int maxAttempts, long retryBackoffMillis) {
+        this.vertx = vertx;
+        this.dioSupplier = dioSupplier;
+        this.batchSize = batchSize;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(1, retryBackoffMillis);
+        this.timerId = vertx.setPeriodic(flushIntervalMillis, id -> flush());
+    }
+
+    public void write(Event event, Handler<AsyncResult<Void>> handler) {
+        write(Collections.singletonList(event), handler);
+    }
+
+    /**
+     * Queues events for the next batch.
+     * @param events the events to persist
+     * @param handler called once the batch containing these events has been committed (or has
+     *                failed); may be <code>null</code> if the caller doesn't need to know
+     */
+    public void write(List<Event> events, Handler<AsyncResult<Void>> handler) {
+        pending.add(new Write(events, handler));
+        pendingEvents += events.size();
+
+        if(pendingEvents >= batchSize) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        if(pending.isEmpty()) {
+            return;
+        }
+
+        List<Write> batch = pending;
+
+        pending = new ArrayList<>();
+        pendingEvents = 0;
+
+        inFlight++;
+        writeBatch(batch, 1);
+    }
+
+    /**
+     * Stops the flush timer and flushes the buffered events.
+     * @return a future completed once every batch has been committed, or has failed for good
+     */
+    public Future<Void> close() {
+        vertx.cancelTimer(timerId);
+        flush();
+
+        Promise<Void> promise = Promise.promise();
+        if(inFlight == 0) {
+            promise.complete();
+        } else {
+            closing.add(promise);
+        }
+        return promise.future();
+    }
+
+    private void writeBatch(List<Write> batch, int attempt) {
+        List<Event> events = new ArrayList<>();
+        for(Write write : batch) {
+            events.addAll(write.events);
+        }
+
+        persist(events, res -> {
+            if(res.succeeded()) {
+                for(Write write : batch) {
+                    write.complete(res);
+                }
+                done();
+            } else if(attempt < maxAttempts) {
+                long backoff = retryBackoffMillis << Math.min(attempt - 1, 16);
+                logger.warn("Failed to write batch of " + events.size() + " event(s); retrying"
+                        + " in " + backoff + " ms", res.cause());
+                vertx.setTimer(backoff, id -> writeBatch(batch, attempt + 1));
+            } else if(batch.size() > 1) {
+                logger.error("Failed to write batch of " + events.size() + " event(s) "
+                        + attempt + " times; writing them separately", res.cause());
+                writeSeparately(batch, 0);
+            } else {
+                logger.error("Failed to write " + events.size() + " event(s)", res.cause());
+                batch.get(0).complete(res);
+                done();
+            }
+        });
+    }
+
+    // one write at a time, so that a failing batch doesn't tie up the worker pool
+    private void writeSeparately(List<Write> batch, int index) {
+        if(index == batch.size()) {
+            done();
+            return;
+        }
+
+        Write write = batch.get(index);
+        persist(write.events, res -> {
+            if(res.failed()) {
+                logger.error("Failed to write " + write.events.size() + " event(s)", res.cause());
+            }
+            write.complete(res);
+            writeSeparately(batch, index + 1);
+        });
+    }
+
+    private void persist(List<Event> events, Handler<AsyncResult<Void>> handler) {
+        vertx.<Void>executeBlocking(future -> {
+            try(DataIO dio = dioSupplier.get()) {
+                dio.addEvents(events);
+                dio.commitSql();
+                future.complete();
+            } catch(Exception e) {
+                future.fail(e);
+            }
+        }, false, handler);
+    }
+
+    private void done() {
+        if(--inFlight == 0) {
+            for(Promise<Void> promise : closing) {
+                promise.complete();
+            }
+            closing.clear();
+        }
+    }
+
+    private static final class Write {
+        private final List<Event> events;
+        private final Handler<AsyncResult<Void>> handler;
+
+        private Write(List<Event> events, Handler<AsyncResult<Void>> handler) {
+            this.events = events;
+            this.handler = handler;
+        }
+
+        private void complete(AsyncResult<Void> result) {
+            if(handler != null) {
+                handler.handle(result);
+            }
+        }
+    }
+}
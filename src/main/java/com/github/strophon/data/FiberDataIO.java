@@ -0,0 +1,149 @@
+package com.github.strophon.data;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.Suspendable;
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.transfer.User;
+import com.github.strophon.util.SyncUtil;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.VertxException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Adapts an <code>AsyncDataIO</code> to the <code>DataIO</code> interface. On a fiber, each call
+ * suspends the fiber until its <code>Future</code> completes, so no worker thread is used;
+ * <code>isNonBlocking()</code> returns <code>true</code>, which makes the framework call it
+ * directly on the fiber instead of through <code>executeBlocking()</code>. Off a fiber (e.g. on a
+ * worker thread), each call blocks the calling thread instead; calls from an event loop thread
+ * that isn't running a fiber are rejected.
+ * IMPORTANT NOTE: fibers can only suspend through methods Quasar knows to be suspendable, so the
+ * application's Quasar configuration must treat the methods of <code>DataIO</code> as suspendable
+ * (e.g. by listing <code>com.github.strophon.data.DataIO</code>'s methods in
+ * <code>META-INF/suspendable-supers</code>).
+ */
+public class FiberDataIO implements DataIO {
+    private final AsyncDataIO async;
+
+    public FiberDataIO(AsyncDataIO async) {
+        this.async = async;
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return true;
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql() {
+        await(async.commitSql());
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql(boolean force) {
+        await(async.commitSql(force));
+    }
+
+    @Override
+    @Suspendable
+    public void close() {
+        await(async.close());
+    }
+
+    @Override
+    @Suspendable
+    public User getUser(int id, boolean lock) {
+        return await(async.getUser(id, lock));
+    }
+
+    @Override
+    @Suspendable
+    public User getUserByEmail(String email) {
+        return await(async.getUserByEmail(email));
+    }
+
+    @Override
+    @Suspendable
+    public void setUserEmailConfirmed(int userId) {
+        await(async.setUserEmailConfirmed(userId));
+    }
+
+    @Override
+    @Suspendable
+    public void addEvents(List<Event> events) {
+        await(async.addEvents(events));
+    }
+
+    @Override
+    @Suspendable
+    public void markEventSeen(int eventId) {
+        await(async.markEventSeen(eventId));
+    }
+
+    @Override
+    @Suspendable
+    public List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId) {
+        return await(async.getUnseenEventsSinceFirstUnseen(userId));
+    }
+
+    @Override
+    @Suspendable
+    public boolean isNameUsed(String name) {
+        return await(async.isNameUsed(name));
+    }
+
+    @Override
+    @Suspendable
+    public boolean isEmailUsed(String email) {
+        return await(async.isEmailUsed(email));
+    }
+
+    @Override
+    @Suspendable
+    public void addUser(User user) {
+        await(async.addUser(user));
+    }
+
+    @Override
+    @Suspendable
+    public void updateUser(User user) {
+        await(async.updateUser(user));
+    }
+
+    @Override
+    @Suspendable
+    public void deleteUser(User user) {
+        await(async.deleteUser(user));
+    }
+
+    @Suspendable
+    private static <T> T await(Future<T> future) {
+        if(Fiber.currentFiber() != null) {
+            return SyncUtil.await(future::onComplete);
+        }
+
+        if(Context.isOnEventLoopThread()) {
+            throw new IllegalStateException("FiberDataIO called on an event loop outside a fiber");
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(res -> {
+            if(res.succeeded()) {
+                result.complete(res.result());
+            } else {
+                result.completeExceptionally(res.cause());
+            }
+        });
+
+        try {
+            return result.join();
+        } catch(CompletionException e) {
+            throw new VertxException(e.getCause());
+        }
+    }
+}
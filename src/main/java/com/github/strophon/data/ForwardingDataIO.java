@@ -0,0 +1,187 @@
+package com.github.strophon.data;
+
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.transfer.User;
+import com.github.strophon.email.EmailOutbox;
+import com.github.strophon.email.OutboxEmail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiConsumer;
+
+/**
+ * <code>DataIO</code> that forwards every call to another one. Decorators extend this and
+ * override only the calls they change.
+ * <code>EmailOutbox</code> calls are forwarded too, so that a decorated <code>DataIO</code> can
+ * still be used as the email outbox; they fail if the underlying <code>DataIO</code> doesn't
+ * implement it.
+ */
+public abstract class ForwardingDataIO implements DataIO, EmailOutbox {
+    protected final DataIO delegate;
+
+    protected ForwardingDataIO(DataIO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return delegate.isNonBlocking();
+    }
+
+    @Override
+    public boolean reset() {
+        return delegate.reset();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    @Override
+    public long getReplicationLagMillis() {
+        return delegate.getReplicationLagMillis();
+    }
+
+    @Override
+    public void commitSql() {
+        delegate.commitSql();
+    }
+
+    @Override
+    public void commitSql(boolean force) {
+        delegate.commitSql(force);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public User getUser(int id, boolean lock) {
+        return delegate.getUser(id, lock);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return delegate.getUserByEmail(email);
+    }
+
+    @Override
+    public void setUserEmailConfirmed(int userId) {
+        delegate.setUserEmailConfirmed(userId);
+    }
+
+    @Override
+    public void addEvents(List<Event> events) {
+        delegate.addEvents(events);
+    }
+
+    @Override
+    public void markEventSeen(int eventId) {
+        delegate.markEventSeen(eventId);
+    }
+
+    @Override
+    public void markEventSeen(int userId, int eventId) {
+        delegate.markEventSeen(userId, eventId);
+    }
+
+    @Override
+    public List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId) {
+        return delegate.getUnseenEventsSinceFirstUnseen(userId);
+    }
+
+    @Override
+    public boolean isNameUsed(String name) {
+        return delegate.isNameUsed(name);
+    }
+
+    @Override
+    public boolean isEmailUsed(String email) {
+        return delegate.isEmailUsed(email);
+    }
+
+    @Override
+    public void addUser(User user) {
+        delegate.addUser(user);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        delegate.updateUser(user);
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        delegate.deleteUser(user);
+    }
+
+    @Override
+    public Map<DataKey, Object> fetchAndLock(SortedSet<DataKey> keys) {
+        return delegate.fetchAndLock(keys);
+    }
+
+    @Override
+    public boolean isRetryableFailure(Exception e) {
+        return delegate.isRetryableFailure(e);
+    }
+
+    @Override
+    public boolean supportsVersionValidation() {
+        return delegate.supportsVersionValidation();
+    }
+
+    @Override
+    public void lockAndValidateVersions(SortedMap<DataKey, Long> versions) {
+        delegate.lockAndValidateVersions(versions);
+    }
+
+    @Override
+    public <T> VersionedEntity<T> getCachedEntity(DataKey key, Class<T> type) {
+        return delegate.getCachedEntity(key, type);
+    }
+
+    @Override
+    public void cacheEntity(DataKey key, long version, Object entity) {
+        delegate.cacheEntity(key, version, entity);
+    }
+
+    @Override
+    public void cacheWrittenEntity(DataKey key, long version, Object entity) {
+        delegate.cacheWrittenEntity(key, version, entity);
+    }
+
+    @Override
+    public void forEachNameAndEmail(BiConsumer<String, String> consumer) {
+        delegate.forEachNameAndEmail(consumer);
+    }
+
+    @Override
+    public void enqueueEmail(OutboxEmail email) {
+        ((EmailOutbox) delegate).enqueueEmail(email);
+    }
+
+    @Override
+    public List<OutboxEmail> claimPendingEmails(int max) {
+        return ((EmailOutbox) delegate).claimPendingEmails(max);
+    }
+
+    @Override
+    public void markEmailSent(long id) {
+        ((EmailOutbox) delegate).markEmailSent(id);
+    }
+
+    @Override
+    public void rescheduleEmail(long id, int attempts, long nextAttemptTime) {
+        ((EmailOutbox) delegate).rescheduleEmail(id, attempts, nextAttemptTime);
+    }
+
+    @Override
+    public void abandonEmail(long id) {
+        ((EmailOutbox) delegate).abandonEmail(id);
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.strophon.data;
+
+import com.github.strophon.action.Action;
+import com.github.strophon.action.ActionExecutor;
+import com.github.strophon.action.input.ActionInput;
+import com.github.strophon.data.transfer.DataSource;
+import com.github.strophon.journal.JournalReader;
+import com.github.strophon.journal.JournalWriter;
+import com.google.gson.Gson;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Event-sourced alternative to a database for actions: the state is kept in memory by a
+ * <code>StateModel</code>, and every action is appended to a memory-mapped journal (see
+ * <code>JournalWriter</code>), as its input and seed, before it is executed. Actions are executed
+ * one at a time, so they need no locks and cost no database round-trips.
+ * Every <code>snapshotInterval</code> actions, the whole state is written to a compressed
+ * snapshot, and the journal segments it covers are deleted. On startup, <code>recover()</code>
+ * loads the latest snapshot and replays the actions journaled after it through the
+ * <code>ActionExecutor</code>, with their logged seeds; this requires actions to be deterministic.
+ * IMPORTANT NOTE: snapshots are taken while holding the engine, so actions wait for them; the
+ * interval should be chosen so that snapshots are rare.
+ */
+public class InMemoryStateEngine implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStateEngine.class);
+    private static final Gson GSON = new Gson();
+
+    private static final String JOURNAL_PREFIX = "actions";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".gz";
+
+    private final ActionExecutor executor;
+    private final Function<String, ActionInput> inputParser;
+    private final StateModel model;
+    private final Path directory;
+    private final int segmentSize;
+    private final int snapshotInterval;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private JournalWriter journal;
+    private int sinceSnapshot;
+
+    /**
+     * @param executor executes actions, both live and replayed
+     * @param inputParser parses journaled inputs (see
+     *                    <code>Instantiator.createInputFromString()</code>)
+     * @param model the in-memory state
+     * @param directory the directory of the journal and snapshots
+     * @param segmentSize the size of each journal segment file, in bytes
+     * @param snapshotInterval the number of actions between snapshots, or 0 for no snapshots
+     */
+    public InMemoryStateEngine(ActionExecutor executor, Function<String, ActionInput> inputParser,
+                               StateModel model, Path directory, int segmentSize,
+                               int snapshotInterval) {
+        this.executor = executor;
+        this.inputParser = inputParser;
+        this.model = model;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Restores the state from the latest snapshot, and replays the actions journaled after it.
+     * Must be called before <code>execute()</code>; later calls do nothing.
+     * @throws IOException if the snapshot or journal can't be read
+     */
+    public void recover() throws IOException {
+        lock.lock();
+        try {
+            if(journal != null) {
+                return;
+            }
+
+            long fromSegment = 0;
+
+            Path snapshot = latestSnapshot();
+            if(snapshot != null) {
+                try(InputStream in = new GZIPInputStream(
+                        new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                    model.readSnapshot(in);
+                }
+                fromSegment = snapshotSegment(snapshot);
+            }
+
+            long replayed =
+                    JournalReader.read(directory, JOURNAL_PREFIX, fromSegment, this::replay);
+
+            journal = new JournalWriter(directory, JOURNAL_PREFIX, segmentSize);
+
+            logger.info("Recovered in-memory state from "
+                    + (snapshot == null ? "an empty state" : snapshot.getFileName())
+                    + " and " + replayed + " journaled actions");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Journals an action and executes it against the in-memory state. Actions that already
+     * failed their input checks, and read-only actions, aren't journaled, since they can't
+     * change the state.
+     * @param action the action to execute
+     * @param seed the random seed, if the action needs random numbers
+     * @return the action, whose result or error is the outcome
+     */
+    public Action execute(Action action, byte[] seed) {
+        lock.lock();
+        try {
+            if(journal == null) {
+                throw new IllegalStateException("recover() must be called before execute()");
+            }
+
+            if(action.getError() != null) {
+                return action;
+            }
+
+            if(executor.isReadOnly(action)) { // can't change the state, so not journaled
+                apply(action, seed);
+                return action;
+            }
+
+            // journaled first, so that an action that throws is replayed, and throws, again
+            journal.append(encode(action.getInput(), seed));
+
+            apply(action, seed);
+
+            if(snapshotInterval > 0 && ++sinceSnapshot >= snapshotInterval) {
+                try {
+                    snapshot();
+                } catch(UncheckedIOException e) { // the journal still has everything
+                    logger.error("Failed to write snapshot", e);
+                }
+            }
+
+            return action;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the state, then deletes older snapshots and the journal segments the
+     * snapshot covers.
+     */
+    public void snapshot() {
+        lock.lock();
+        try {
+            if(journal == null) {
+                throw new IllegalStateException("recover() must be called before snapshot()");
+            }
+
+            long segment = journal.rollOver(); // actions from now on aren't in the snapshot
+            sinceSnapshot = 0;
+
+            Path tmp = directory.resolve(SNAPSHOT_PREFIX + segment + ".tmp");
+            try(OutputStream out = new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                model.writeSnapshot(out);
+            }
+            Path snapshot = directory.resolve(SNAPSHOT_PREFIX + segment + SNAPSHOT_SUFFIX);
+            Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+            for(Path path : listSnapshots()) {
+                if(snapshotSegment(path) < segment) {
+                    Files.delete(path);
+                }
+            }
+            for(Path path : JournalReader.listSegments(directory, JOURNAL_PREFIX)) {
+                if(JournalReader.segmentNumber(path, JOURNAL_PREFIX) < segment) {
+                    Files.delete(path);
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the journal to the disk. Journaled actions survive a crash of the process without
+     * this, but not a crash of the operating system.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if(journal != null) {
+                journal.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if(journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(Action action, byte[] seed) {
+        try(DataIO dio = model.openDataIo()) {
+            executor.execute(action, seed, new DataSource(dio));
+        }
+    }
+
+    private void replay(ByteBuffer record) {
+        int seedLength = record.getInt();
+        byte[] seed = null;
+        if(seedLength >= 0) {
+            seed = new byte[seedLength];
+            record.get(seed);
+        }
+
+        byte[] input = new byte[record.remaining()];
+        record.get(input);
+        String json = new String(input, StandardCharsets.UTF_8);
+
+        try {
+            apply(executor.getAction(inputParser.apply(json)), seed);
+        } catch(RuntimeException e) {
+            logger.warn("Replayed action failed (Input: " + json + " )", e);
+        }
+    }
+
+    // seed length (-1 if none), seed, then the input as JSON
+    private static byte[] encode(ActionInput input, byte[] seed) {
+        byte[] json = GSON.toJson(input).getBytes(StandardCharsets.UTF_8);
+        int seedLength = seed == null ? 0 : seed.length;
+
+        ByteBuffer record = ByteBuffer.allocate(4 + seedLength + json.length);
+        record.putInt(seed == null ? -1 : seed.length);
+        if(seed != null) {
+            record.put(seed);
+        }
+        record.put(json);
+        return record.array();
+    }
+
+    private Path latestSnapshot() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if(Files.isDirectory(directory)) {
+            try(Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                }).forEach(snapshots::add);
+            }
+        }
+        snapshots.sort(Comparator.comparingLong(InMemoryStateEngine::snapshotSegment));
+        return snapshots;
+    }
+
+    private static long snapshotSegment(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                                             name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.strophon.data;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.transfer.User;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <code>DataIO</code> decorator that sends unlocked reads (<code>getUser(id, false)</code>,
+ * <code>getUserByEmail()</code>, <code>isNameUsed()</code>, <code>isEmailUsed()</code> and
+ * <code>getUnseenEventsSinceFirstUnseen()</code>) to a read replica from a
+ * <code>ReplicaSet</code>, and everything else to the primary <code>DataIO</code> it wraps.
+ * Reads go to the primary instead once this instance has written anything, for users recently
+ * written through this node, or if no replica is within the staleness bound or a replica read
+ * fails. The replica is opened on the first routed read, and closed with this instance.
+ */
+public class ReplicaRoutingDataIO extends ForwardingDataIO {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataIO.class);
+
+    private final ReplicaSet replicaSet;
+    private final Set<Integer> writtenUsers = new HashSet<>();
+
+    private DataIO replica;
+    private boolean replicaUnavailable;
+    private boolean written;
+
+    public ReplicaRoutingDataIO(DataIO primary, ReplicaSet replicaSet) {
+        super(primary);
+        this.replicaSet = replicaSet;
+    }
+
+    @Override
+    @Suspendable
+    public User getUser(int id, boolean lock) {
+        if(lock || replicaSet.isSticky(id)) {
+            return delegate.getUser(id, lock);
+        }
+
+        DataIO replica = replicaForRead();
+        if(replica != null) {
+            try {
+                return replica.getUser(id, false);
+            } catch(RuntimeException e) {
+                replicaFailed(e);
+            }
+        }
+
+        return delegate.getUser(id, false);
+    }
+
+    @Override
+    @Suspendable
+    public User getUserByEmail(String email) {
+        User user = null;
+        boolean read = false;
+
+        DataIO replica = replicaForRead();
+        if(replica != null) {
+            try {
+                user = replica.getUserByEmail(email);
+                read = true;
+            } catch(RuntimeException e) {
+                replicaFailed(e);
+            }
+        }
+
+        if(!read) {
+            return delegate.getUserByEmail(email);
+        }
+
+        // the user is only known after the read
+        if(user != null && replicaSet.isSticky(user.getId())) {
+            return delegate.getUserByEmail(email);
+        }
+        return user;
+    }
+
+    @Override
+    @Suspendable
+    public boolean isNameUsed(String name) {
+        DataIO replica = replicaForRead();
+        if(replica != null) {
+            try {
+                return replica.isNameUsed(name);
+            } catch(RuntimeException e) {
+                replicaFailed(e);
+            }
+        }
+
+        return delegate.isNameUsed(name);
+    }
+
+    @Override
+    @Suspendable
+    public boolean isEmailUsed(String email) {
+        DataIO replica = replicaForRead();
+        if(replica != null) {
+            try {
+                return replica.isEmailUsed(email);
+            } catch(RuntimeException e) {
+                replicaFailed(e);
+            }
+        }
+
+        return delegate.isEmailUsed(email);
+    }
+
+    @Override
+    @Suspendable
+    public List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId) {
+        if(replicaSet.isSticky(userId)) {
+            return delegate.getUnseenEventsSinceFirstUnseen(userId);
+        }
+
+        DataIO replica = replicaForRead();
+        if(replica != null) {
+            try {
+                return replica.getUnseenEventsSinceFirstUnseen(userId);
+            } catch(RuntimeException e) {
+                replicaFailed(e);
+            }
+        }
+
+        return delegate.getUnseenEventsSinceFirstUnseen(userId);
+    }
+
+    @Override
+    @Suspendable
+    public void setUserEmailConfirmed(int userId) {
+        written(userId);
+        delegate.setUserEmailConfirmed(userId);
+    }
+
+    @Override
+    @Suspendable
+    public void addEvents(List<Event> events) {
+        written = true;
+        for(Event event : events) {
+            if(event.getUserId() != null) {
+                writtenUsers.add(event.getUserId());
+            }
+        }
+        delegate.addEvents(events);
+    }
+
+    @Override
+    @Suspendable
+    public void markEventSeen(int eventId) {
+        written = true;
+        delegate.markEventSeen(eventId);
+    }
+
+    @Override
+    @Suspendable
+    public void markEventSeen(int userId, int eventId) {
+        written(userId);
+        delegate.markEventSeen(userId, eventId);
+    }
+
+    @Override
+    @Suspendable
+    public void addUser(User user) {
+        written = true;
+        delegate.addUser(user);
+        writtenUsers.add(user.getId()); // assigned by addUser()
+    }
+
+    @Override
+    @Suspendable
+    public void updateUser(User user) {
+        written(user.getId());
+        delegate.updateUser(user);
+    }
+
+    @Override
+    @Suspendable
+    public void deleteUser(User user) {
+        written(user.getId());
+        delegate.deleteUser(user);
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql() {
+        delegate.commitSql();
+        committed();
+    }
+
+    @Override
+    @Suspendable
+    public void commitSql(boolean force) {
+        delegate.commitSql(force);
+        committed();
+    }
+
+    // the rolled-back writes don't need to be read back, so reads may use the replica again
+    @Override
+    @Suspendable
+    public boolean reset() {
+        written = false;
+        writtenUsers.clear();
+        return delegate.reset();
+    }
+
+    @Override
+    @Suspendable
+    public void close() {
+        try {
+            if(replica != null) {
+                replica.close();
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    // each read calls the replica directly rather than through a lambda, so that a fiber can
+    // suspend in it (see FiberDataIO)
+    @Suspendable
+    private DataIO replicaForRead() {
+        if(written || replicaUnavailable) {
+            return null;
+        }
+
+        if(replica == null) {
+            replica = replicaSet.open();
+            replicaUnavailable = replica == null;
+        }
+        return replica;
+    }
+
+    @Suspendable
+    private void replicaFailed(RuntimeException e) {
+        logger.warn("Read replica failed; reading from primary", e);
+        closeReplica();
+    }
+
+    @Suspendable
+    private void closeReplica() {
+        try {
+            replica.close();
+        } catch(RuntimeException e) {
+            logger.warn("Failed to close read replica", e);
+        }
+        replica = null;
+        replicaUnavailable = true;
+    }
+
+    private void written(int userId) {
+        written = true;
+        writtenUsers.add(userId);
+    }
+
+    private void committed() {
+        replicaSet.markWritten(writtenUsers);
+        writtenUsers.clear();
+    }
+}
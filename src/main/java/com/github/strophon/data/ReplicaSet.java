@@ -0,0 +1,129 @@
+package com.github.strophon.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read replicas used by <code>ReplicaRoutingDataIO</code>. Replicas are chosen round-robin,
+ * skipping any whose replication lag (see <code>DataIO.getReplicationLagMillis()</code>, sampled
+ * at most once a second per replica) exceeds the staleness bound. Replicas that fail to open are
+ * skipped until their next sample.
+ * Users written through this node are read from the primary for a while after each commit, so
+ * that they see their own writes. Writes made on other nodes are only bounded by the staleness
+ * bound.
+ */
+public class ReplicaSet {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private static final long LAG_SAMPLE_INTERVAL = 1000;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final Cache<Integer, Boolean> recentlyWritten;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicas sources of replica <code>DataIO</code> objects (e.g. the
+     *                 <code>borrow()</code> methods of per-replica <code>DataIOPool</code>s)
+     * @param maxLagMillis maximum replication lag of a replica that is read from, in milliseconds
+     * @param stickinessMillis how long a user is read from the primary after a write to that user
+     *                         is committed, in milliseconds; should be at least
+     *                         <code>maxLagMillis</code>
+     * @param maxStickyUsers maximum number of recently written users to track
+     */
+    public ReplicaSet(List<Supplier<DataIO>> replicas, long maxLagMillis, long stickinessMillis,
+                      long maxStickyUsers) {
+        for(Supplier<DataIO> supplier : replicas) {
+            this.replicas.add(new Replica(supplier));
+        }
+        this.maxLagMillis = maxLagMillis;
+        recentlyWritten = CacheBuilder.newBuilder()
+                                      .expireAfterWrite(stickinessMillis, TimeUnit.MILLISECONDS)
+                                      .maximumSize(maxStickyUsers)
+                                      .build();
+    }
+
+    /**
+     * Opens a replica within the staleness bound.
+     * @return an open replica <code>DataIO</code>, or <code>null</code> if none is available
+     */
+    public DataIO open() {
+        int size = replicas.size();
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+
+        for(int i = 0; i < size; i++) {
+            DataIO dio = replicas.get((start + i) % size).open();
+            if(dio != null) {
+                return dio;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param userId the user's ID
+     * @return whether the user was written recently, and must be read from the primary
+     */
+    public boolean isSticky(int userId) {
+        return recentlyWritten.getIfPresent(userId) != null;
+    }
+
+    /**
+     * Records that writes to some users have been committed.
+     * @param userIds the IDs of the users written
+     */
+    public void markWritten(Collection<Integer> userIds) {
+        for(Integer userId : userIds) {
+            recentlyWritten.put(userId, Boolean.TRUE);
+        }
+    }
+
+    private final class Replica {
+        private final Supplier<DataIO> supplier;
+        private volatile long lagMillis;
+        private volatile long sampledAt = Long.MIN_VALUE;
+
+        private Replica(Supplier<DataIO> supplier) {
+            this.supplier = supplier;
+        }
+
+        private DataIO open() {
+            long now = System.currentTimeMillis();
+            boolean sample = now - sampledAt >= LAG_SAMPLE_INTERVAL;
+
+            if(!sample && lagMillis > maxLagMillis) {
+                return null;
+            }
+
+            DataIO dio = null;
+            try {
+                dio = supplier.get();
+                if(sample) {
+                    lagMillis = dio.getReplicationLagMillis();
+                    sampledAt = now;
+                }
+            } catch(Exception e) {
+                logger.warn("Failed to open read replica", e);
+                lagMillis = Long.MAX_VALUE;
+                sampledAt = now;
+            }
+
+            if(dio != null && lagMillis > maxLagMillis) {
+                dio.close();
+                return null;
+            }
+
+            return dio;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.strophon.data;
+
+import com.github.strophon.data.transfer.User;
+
+/**
+ * Global lookup index used by <code>ShardedDataIO</code> for the queries that can't be routed by
+ * user ID: it maps names and email addresses to user IDs, and allocates the IDs of new users.
+ * Typically backed by a small unsharded table or a shared cache. Must be thread-safe.
+ */
+public interface ShardDirectory {
+
+    /**
+     * Allocates the ID of a new user, which determines the user's shard.
+     * @return a new, unique user ID
+     */
+    int allocateUserId();
+
+    /**
+     * @param email the email address to look up
+     * @return the ID of the user with that email address, or <code>null</code> if there is none
+     */
+    Integer findUserIdByEmail(String email);
+
+    boolean isNameUsed(String name);
+
+    boolean isEmailUsed(String email);
+
+    /**
+     * Adds or updates a user's entries, replacing any old name or email address. Called once the
+     * user's write has committed on its shard, so a rolled-back write never changes the
+     * directory. Until then, lookups still see the user's previous entries (or none, for a new
+     * user); if the call fails, they keep doing so until the user is written again.
+     * @param user the user
+     */
+    void putUser(User user);
+
+    /**
+     * Removes a user's entries. Called once the user's deletion has committed on its shard.
+     * @param user the user
+     */
+    void removeUser(User user);
+}
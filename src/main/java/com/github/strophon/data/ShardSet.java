@@ -0,0 +1,99 @@
+package com.github.strophon.data;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * The shards used by <code>ShardedDataIO</code>, and the consistent-hash ring that assigns each
+ * user ID to one of them. Each shard is placed on the ring at several points (virtual nodes), so
+ * that users are spread evenly, and adding a shard only moves the users that now hash to it.
+ * Action data identified by a <code>DataKey</code> is kept on the shard of the user that owns it.
+ * Instances are immutable, and can be shared by all verticles.
+ */
+public class ShardSet {
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final List<Supplier<DataIO>> shards;
+    private final ShardDirectory directory;
+    private final ToIntFunction<DataKey> keyOwner;
+    private final boolean nonBlocking;
+    private final NavigableMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * Creates a set of blocking shards whose data keys' IDs are user IDs (see the other
+     * constructor).
+     * @param shards sources of each shard's <code>DataIO</code> objects
+     * @param directory global lookup index for names, email addresses and new user IDs
+     * @param virtualNodes number of points on the ring per shard (e.g. 128)
+     */
+    public ShardSet(List<Supplier<DataIO>> shards, ShardDirectory directory, int virtualNodes) {
+        this(shards, directory, virtualNodes, key -> (int) key.getId(), false);
+    }
+
+    /**
+     * @param shards sources of each shard's <code>DataIO</code> objects (e.g. the
+     *               <code>borrow()</code> methods of per-shard <code>DataIOPool</code>s); the
+     *               order must be the same on every node
+     * @param directory global lookup index for names, email addresses and new user IDs
+     * @param virtualNodes number of points on the ring per shard (e.g. 128)
+     * @param keyOwner maps a <code>DataKey</code> to the ID of the user whose shard holds it
+     * @param nonBlocking whether the shards' <code>DataIO</code>s and the directory are
+     *                    non-blocking (see <code>DataIO.isNonBlocking()</code>)
+     */
+    public ShardSet(List<Supplier<DataIO>> shards, ShardDirectory directory, int virtualNodes,
+                    ToIntFunction<DataKey> keyOwner, boolean nonBlocking) {
+        this.shards = new ArrayList<>(shards);
+        this.directory = directory;
+        this.keyOwner = keyOwner;
+        this.nonBlocking = nonBlocking;
+
+        for(int shard = 0; shard < shards.size(); shard++) {
+            for(int node = 0; node < virtualNodes; node++) {
+                ring.put(HASH.hashString("shard-" + shard + "-" + node, StandardCharsets.UTF_8)
+                             .asInt(), shard);
+            }
+        }
+    }
+
+    /**
+     * @param userId the user's ID
+     * @return the index of the shard holding the user
+     */
+    public int shardFor(int userId) {
+        Map.Entry<Integer, Integer> entry = ring.ceilingEntry(HASH.hashInt(userId).asInt());
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * @param key a piece of action data
+     * @return the index of the shard holding it
+     */
+    public int shardFor(DataKey key) {
+        return shardFor(keyOwner.applyAsInt(key));
+    }
+
+    public DataIO open(int shard) {
+        return shards.get(shard).get();
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public ShardDirectory getDirectory() {
+        return directory;
+    }
+
+    public boolean isNonBlocking() {
+        return nonBlocking;
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.strophon.data;
+
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.transfer.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * <code>DataIO</code> that spreads users over several backing <code>DataIO</code>s (shards) by
+ * user ID, using the ring of a <code>ShardSet</code>. Queries by name or email address, and the
+ * allocation of new user IDs, go through the set's <code>ShardDirectory</code>.
+ * A transaction may read from any number of shards, but may only lock or write users on one of
+ * them; trying to lock or write a user on a second shard throws a
+ * <code>CrossShardException</code>, and the transaction should be abandoned. The same applies to
+ * action data fetched with <code>fetchAndLock()</code>, which is routed to the shard of the user
+ * owning each key (see <code>ShardSet.shardFor(DataKey)</code>); a key set spanning shards is
+ * rejected before anything is locked, so a batched prefetch of subsequent actions falls back to
+ * fetching each action's data separately. Each commit ends the transaction, so subsequent actions
+ * (which commit separately) may use different shards.
+ * Events are appended to the shard of the user they are for (or of the transaction, for broadcast
+ * events). Events on other shards are committed separately, and only once the transaction's own
+ * shard has committed; if one of those commits fails, the transaction's writes and the events
+ * committed before it stay committed. The directory is only updated once the users' writes and
+ * deletions have committed on their shard, so a rolled-back transaction never changes it.
+ * Shard <code>DataIO</code>s are opened on first use, and closed with this instance. The email
+ * outbox is not supported.
+ */
+public class ShardedDataIO implements DataIO {
+    private final ShardSet shardSet;
+    private final ShardDirectory directory;
+    private final Map<Integer, DataIO> open = new LinkedHashMap<>();
+
+    private int writeShard = -1;
+
+    // applied to the directory, in order, once the write shard has committed
+    private final List<Runnable> directoryChanges = new ArrayList<>();
+
+    public ShardedDataIO(ShardSet shardSet) {
+        this.shardSet = shardSet;
+        this.directory = shardSet.getDirectory();
+    }
+
+    @Override
+    public void commitSql() {
+        commit(DataIO::commitSql);
+    }
+
+    @Override
+    public void commitSql(boolean force) {
+        commit(dio -> dio.commitSql(force));
+    }
+
+    @Override
+    public boolean reset() {
+        boolean reusable = true;
+        for(DataIO dio : open.values()) {
+            reusable &= dio.reset();
+        }
+        writeShard = -1;
+        directoryChanges.clear();
+        return reusable;
+    }
+
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for(DataIO dio : open.values()) {
+            try {
+                dio.close();
+            } catch(RuntimeException e) {
+                failure = e;
+            }
+        }
+        open.clear();
+        directoryChanges.clear();
+
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public User getUser(int id, boolean lock) {
+        return lock ? writable(id).getUser(id, true) : shard(id).getUser(id, false);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        Integer userId = directory.findUserIdByEmail(email);
+        return userId == null ? null : shard(userId).getUserByEmail(email);
+    }
+
+    @Override
+    public void setUserEmailConfirmed(int userId) {
+        writable(userId).setUserEmailConfirmed(userId);
+    }
+
+    @Override
+    public void addEvents(List<Event> events) {
+        Map<Integer, List<Event>> byShard = new HashMap<>();
+        for(Event event : events) {
+            int shard;
+            if(event.getUserId() != null) {
+                shard = shardSet.shardFor(event.getUserId());
+            } else {
+                shard = writeShard >= 0 ? writeShard : 0;
+            }
+            byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(event);
+        }
+
+        for(Map.Entry<Integer, List<Event>> entry : byShard.entrySet()) {
+            open(entry.getKey()).addEvents(entry.getValue());
+        }
+    }
+
+    /**
+     * Not supported, as the event's shard can't be determined from its ID; use
+     * <code>markEventSeen(int, int)</code> instead.
+     */
+    @Override
+    public void markEventSeen(int eventId) {
+        throw new UnsupportedOperationException(
+                "ShardedDataIO requires markEventSeen(userId, eventId)");
+    }
+
+    @Override
+    public void markEventSeen(int userId, int eventId) {
+        shard(userId).markEventSeen(userId, eventId);
+    }
+
+    @Override
+    public List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId) {
+        return shard(userId).getUnseenEventsSinceFirstUnseen(userId);
+    }
+
+    @Override
+    public boolean isNameUsed(String name) {
+        return directory.isNameUsed(name);
+    }
+
+    @Override
+    public boolean isEmailUsed(String email) {
+        return directory.isEmailUsed(email);
+    }
+
+    @Override
+    public void addUser(User user) {
+        if(user.getId() == 0) {
+            user.setId(directory.allocateUserId());
+        }
+
+        writable(user.getId()).addUser(user);
+        directoryChanges.add(() -> directory.putUser(user));
+    }
+
+    @Override
+    public void updateUser(User user) {
+        writable(user.getId()).updateUser(user);
+        directoryChanges.add(() -> directory.putUser(user));
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        writable(user.getId()).deleteUser(user);
+        directoryChanges.add(() -> directory.removeUser(user));
+    }
+
+    /**
+     * Fetches and locks the keys on the shard holding them, which becomes this transaction's
+     * write shard.
+     * @throws CrossShardException if the keys are on more than one shard, or on a shard other
+     * than the one this transaction already writes to
+     */
+    @Override
+    public Map<DataKey, Object> fetchAndLock(SortedSet<DataKey> keys) {
+        int shard = -1;
+        for(DataKey key : keys) {
+            int keyShard = shardSet.shardFor(key);
+
+            if(shard < 0) {
+                shard = keyShard;
+            } else if(shard != keyShard) {
+                throw new CrossShardException("Keys " + keys + " are on shards " + shard
+                        + " and " + keyShard);
+            }
+        }
+
+        if(shard < 0) {
+            return new HashMap<>();
+        }
+
+        return writable(shard, "Keys " + keys).fetchAndLock(keys);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return shardSet.isNonBlocking();
+    }
+
+    @Override
+    public void forEachNameAndEmail(BiConsumer<String, String> consumer) {
+        for(int shard = 0; shard < shardSet.size(); shard++) {
+            open(shard).forEachNameAndEmail(consumer);
+        }
+    }
+
+    // the transaction's own shard first, so that nothing else commits if it fails; the others only
+    // hold events
+    private void commit(Consumer<DataIO> commit) {
+        if(writeShard >= 0) {
+            commit.accept(open.get(writeShard));
+        }
+
+        for(Runnable change : directoryChanges) {
+            change.run();
+        }
+        directoryChanges.clear();
+
+        for(Map.Entry<Integer, DataIO> entry : open.entrySet()) {
+            if(entry.getKey() != writeShard) {
+                commit.accept(entry.getValue());
+            }
+        }
+        writeShard = -1;
+    }
+
+    private DataIO shard(int userId) {
+        return open(shardSet.shardFor(userId));
+    }
+
+    private DataIO writable(int userId) {
+        return writable(shardSet.shardFor(userId), "User " + userId);
+    }
+
+    private DataIO writable(int shard, String what) {
+        if(writeShard < 0) {
+            writeShard = shard;
+        } else if(writeShard != shard) {
+            throw new CrossShardException(what + " is on shard " + shard
+                    + ", but this transaction already writes to shard " + writeShard);
+        }
+
+        return open(shard);
+    }
+
+    private DataIO open(int shard) {
+        DataIO dio = open.get(shard);
+        if(dio == null) {
+            dio = shardSet.open(shard);
+            open.put(shard, dio);
+        }
+        return dio;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.strophon.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The state kept in memory by an <code>InMemoryStateEngine</code>, e.g. per-user state held in
+ * maps, and the <code>DataIO</code> through which actions read and change it.
+ * The engine runs one action at a time, so the state needs no locking of its own.
+ */
+public interface StateModel {
+    /**
+     * Opens a <code>DataIO</code> over the state, for one action and its subsequent actions.
+     * Changes must only be applied to the state by <code>commitSql()</code>, and discarded by
+     * <code>close()</code>, so that an action that fails leaves no trace. The changes an action
+     * makes must depend only on its input, its seed and the state, since they are recreated by
+     * replaying the journal.
+     * @return a <code>DataIO</code> over the state
+     */
+    DataIO openDataIo();
+
+    /**
+     * Writes the whole state, for a snapshot.
+     * @param out the snapshot's stream, which the engine compresses and closes
+     * @throws IOException if the state can't be written
+     */
+    void writeSnapshot(OutputStream out) throws IOException;
+
+    /**
+     * Replaces the state with one written by <code>writeSnapshot()</code>.
+     * @param in the snapshot's stream
+     * @throws IOException if the snapshot can't be read
+     */
+    void readSnapshot(InputStream in) throws IOException;
+}
@@ -0,0 +1,148 @@
+package com.github.strophon.data;
+
+import com.google.common.hash.BloomFilter;
+import com.google.gson.Gson;
+import com.google.common.hash.Funnels;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * In-memory pre-check for name and email uniqueness during registration. Names and emails are
+ * normalized and kept in Bloom filters: a negative answer means the value is definitely unused,
+ * while a positive answer must still be confirmed against the database. Deleted users are never
+ * removed, which only costs an extra database check.
+ * Users written through a decorated <code>DataIO</code> (see
+ * <code>UniquenessIndexingDataIO</code>) are published to every node's index; users created or
+ * renamed in any other way must be published with <code>publish()</code>, or a negative answer
+ * could let a duplicate through.
+ * One instance is shared by all verticles in a Vert.x instance (see <code>getShared()</code>).
+ */
+public class UniquenessIndex implements Shareable {
+    private static final Logger logger = LoggerFactory.getLogger(UniquenessIndex.class);
+    private static final Gson GSON = new Gson();
+
+    public static final String REGISTERED_ADDRESS = "server.registered";
+
+    private static final String MAP_NAME = "com.github.strophon.data.UniquenessIndex";
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    // DataIO decorators aren't created with a Vert.x instance, so they publish through this one
+    private static volatile Vertx publisher;
+
+    private final BloomFilter<CharSequence> names;
+    private final BloomFilter<CharSequence> emails;
+    private final AtomicBoolean loadStarted = new AtomicBoolean();
+    private volatile boolean ready;
+
+    public UniquenessIndex(long expectedUsers) {
+        names = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedUsers, FALSE_POSITIVE_PROBABILITY);
+        emails = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedUsers, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Retrieves the index shared by all verticles of this Vert.x instance, creating it (and
+     * starting to load it from the database) if it doesn't exist yet.
+     * @param vertx the Vert.x instance
+     * @param expectedUsers expected number of users, used to size the filters
+     * @param dioSupplier source of the <code>DataIO</code> used to load existing users
+     * @return the shared index
+     */
+    public static UniquenessIndex getShared(Vertx vertx, long expectedUsers,
+                                            Supplier<DataIO> dioSupplier) {
+        LocalMap<String, UniquenessIndex> map = vertx.sharedData().getLocalMap(MAP_NAME);
+
+        UniquenessIndex index = map.get(MAP_NAME);
+        if(index == null) {
+            UniquenessIndex created = new UniquenessIndex(expectedUsers);
+            index = map.putIfAbsent(MAP_NAME, created);
+            if(index == null) {
+                index = created;
+            }
+        }
+
+        publisher = vertx;
+        index.load(vertx, dioSupplier);
+
+        return index;
+    }
+
+    /**
+     * Publishes a user's name and email to the indexes of every node, before the user is
+     * committed, so that no node can rule them out once they are in use. Does nothing if no
+     * index has been created in this JVM.
+     * @param name the user's name
+     * @param email the user's email address
+     */
+    public static void publish(String name, String email) {
+        Vertx vertx = publisher;
+        if(vertx != null && (name != null || email != null)) {
+            vertx.eventBus().publish(REGISTERED_ADDRESS, GSON.toJson(new String[] { name, email }));
+        }
+    }
+
+    private void load(Vertx vertx, Supplier<DataIO> dioSupplier) {
+        if(!loadStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        vertx.<Void>executeBlocking(future -> {
+            try(DataIO dio = dioSupplier.get()) {
+                dio.forEachNameAndEmail(this::add);
+                future.complete();
+            } catch(Exception e) {
+                future.fail(e);
+            }
+        }, false, res -> {
+            if(res.succeeded()) {
+                ready = true;
+                logger.info("Name/email uniqueness index loaded");
+            } else {
+                // stay not-ready; every check will go to the database
+                logger.error("Failed to load name/email uniqueness index", res.cause());
+            }
+        });
+    }
+
+    public void add(String name, String email) {
+        if(name != null) {
+            names.put(normalize(name));
+        }
+        if(email != null) {
+            emails.put(normalize(email));
+        }
+    }
+
+    /**
+     * @param name the name to check
+     * @return <code>false</code> if the name is definitely unused, <code>true</code> if it may be
+     * in use (or if the index hasn't finished loading)
+     */
+    public boolean mightContainName(String name) {
+        return !ready || names.mightContain(normalize(name));
+    }
+
+    /**
+     * @param email the email address to check
+     * @return <code>false</code> if the email is definitely unused, <code>true</code> if it may be
+     * in use (or if the index hasn't finished loading)
+     */
+    public boolean mightContainEmail(String email) {
+        return !ready || emails.mightContain(normalize(email));
+    }
+
+    // normalizing more aggressively than the database compares can only cause extra checks,
+    // never missed ones
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
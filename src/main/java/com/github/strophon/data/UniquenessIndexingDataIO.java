@@ -0,0 +1,28 @@
+package com.github.strophon.data;
+
+import com.github.strophon.data.transfer.User;
+
+/**
+ * <code>DataIO</code> decorator that publishes the name and email of every user it adds or
+ * updates to the <code>UniquenessIndex</code> of every node (see
+ * <code>UniquenessIndex.publish()</code>), so that users created by actions or other handlers are
+ * indexed as well as those registered by <code>ServerVerticle</code>. They are published before
+ * the write, since indexing a user that ends up rolled back only costs an extra database check.
+ */
+public class UniquenessIndexingDataIO extends ForwardingDataIO {
+    public UniquenessIndexingDataIO(DataIO delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void addUser(User user) {
+        UniquenessIndex.publish(user.getName(), user.getEmail());
+        delegate.addUser(user);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        UniquenessIndex.publish(user.getName(), user.getEmail());
+        delegate.updateUser(user);
+    }
+}
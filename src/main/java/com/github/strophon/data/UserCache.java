@@ -0,0 +1,169 @@
+package com.github.strophon.data;
+
+import com.github.strophon.data.transfer.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Node-local, bounded cache of <code>User</code> objects for unlocked reads (see
+ * <code>CachingDataIO</code>). Concurrent misses for the same user are coalesced, so only one of
+ * them loads the user while the others wait for its result. Callers always receive their own
+ * copy, so they may modify it freely.
+ * Every change to a user bumps a version counter; a load that overlaps a change is returned to
+ * its callers but not cached, so that stale users are never cached after the change is committed.
+ * Changes made on other nodes are only seen once the entry expires, which bounds how stale an
+ * unlocked read can be.
+ */
+public class UserCache {
+    private static final int VERSION_STRIPES = 1024;
+
+    private final Cache<Integer, User> users;
+    private final ConcurrentMap<Integer, CompletableFuture<User>> loads = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final UnaryOperator<User> copier;
+
+    /**
+     * @param maxEntries maximum number of users to cache
+     * @param ttlMillis how long users are kept, in milliseconds
+     * @param copier creates an independent copy of a user (see <code>Instantiator.copyUser()</code>)
+     */
+    public UserCache(long maxEntries, long ttlMillis, UnaryOperator<User> copier) {
+        this.copier = copier;
+        users = CacheBuilder.newBuilder()
+                            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                            .maximumSize(maxEntries)
+                            .recordStats()
+                            .build();
+    }
+
+    /**
+     * Retrieves a user from the cache, loading it if it isn't cached. If the same user is already
+     * being loaded by another thread, waits for that load instead of starting another one.
+     * Users that don't exist are not cached.
+     * @param id the user's ID
+     * @param loader loads the user from the database (without locking)
+     * @return a copy of the user, or <code>null</code> if the user doesn't exist
+     */
+    public User get(int id, IntFunction<User> loader) {
+        User cached = users.getIfPresent(id);
+        if(cached != null) {
+            return copier.apply(cached);
+        }
+
+        CompletableFuture<User> load = new CompletableFuture<>();
+        CompletableFuture<User> existing = loads.putIfAbsent(id, load);
+        if(existing != null) {
+            return await(existing);
+        }
+
+        long version = versions.get(stripe(id));
+
+        try {
+            User user = loader.apply(id);
+            User copy = user == null ? null : copier.apply(user);
+
+            if(copy != null) {
+                cache(id, copy, version);
+            }
+
+            load.complete(copy);
+            return user;
+        } catch(RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(id, load);
+        }
+    }
+
+    /**
+     * Retrieves a user from the cache without loading it. Callers that must not block (see
+     * <code>DataIO.isNonBlocking()</code>) load missing users themselves, reading
+     * <code>getVersion()</code> first and caching the result with <code>putIfUnchanged()</code>,
+     * so that they never wait for loads started by other callers.
+     * @param id the user's ID
+     * @return a copy of the user, or <code>null</code> if the user isn't cached
+     */
+    public User getIfPresent(int id) {
+        User cached = users.getIfPresent(id);
+        return cached == null ? null : copier.apply(cached);
+    }
+
+    /**
+     * @param id the user's ID
+     * @return the user's invalidation version, to be passed to <code>putIfUnchanged()</code>
+     */
+    public long getVersion(int id) {
+        return versions.get(stripe(id));
+    }
+
+    /**
+     * Caches a copy of a user loaded by the caller, unless it was invalidated since the load
+     * started.
+     * @param id the user's ID
+     * @param user the loaded user, or <code>null</code> if the user doesn't exist (not cached)
+     * @param version the user's version, read before the load started
+     */
+    public void putIfUnchanged(int id, User user, long version) {
+        if(user != null && versions.get(stripe(id)) == version) {
+            cache(id, copier.apply(user), version);
+        }
+    }
+
+    /**
+     * Removes a user from the cache. Must be called both before a user is changed and after the
+     * change is committed.
+     * @param id the user's ID
+     */
+    public void invalidate(int id) {
+        versions.incrementAndGet(stripe(id));
+        users.invalidate(id);
+
+        // later readers must not join a load that started before the change
+        loads.remove(id);
+    }
+
+    public CacheStats getStats() {
+        return users.stats();
+    }
+
+    private void cache(int id, User copy, long version) {
+        int stripe = stripe(id);
+        if(versions.get(stripe) != version) {
+            return;
+        }
+
+        users.put(id, copy);
+
+        // an invalidation between the check and the put may have missed the new entry
+        if(versions.get(stripe) != version) {
+            users.invalidate(id);
+        }
+    }
+
+    private User await(CompletableFuture<User> load) {
+        try {
+            User user = load.join();
+            return user == null ? null : copier.apply(user);
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int stripe(int id) {
+        return (id & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.strophon.data;
+
+/**
+ * Thrown by <code>DataIO.lockAndValidateVersions()</code> when data read by an optimistically
+ * executed action changed before the action's changes could be written. The action is run again
+ * by <code>ActionExecutor.executeWithRetry()</code>.
+ */
+public class VersionConflictException extends RuntimeException {
+    private final DataKey key;
+
+    public VersionConflictException(DataKey key, long expectedVersion, Long actualVersion) {
+        super("Version conflict on " + key + ": read version " + expectedVersion
+                + ", but the current version is " + actualVersion);
+        this.key = key;
+    }
+
+    public DataKey getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.strophon.data;
+
+/**
+ * An entity read from an <code>EntityCache</code>, with the version it had when it was cached.
+ * The version can be recorded for optimistic execution (see
+ * <code>ObjectContainer.setVersion()</code>).
+ * @param <T> the entity type
+ */
+public final class VersionedEntity<T> {
+    private final T entity;
+    private final long version;
+
+    public VersionedEntity(T entity, long version) {
+        this.entity = entity;
+        this.version = version;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.strophon.data.transfer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The fields of an <code>ObjectContainer</code> that changed since it was injected (see
+ * <code>ObjectContainer.getChanges()</code>). Fields are compared by their GSON serialization.
+ * For fields holding arrays or lists, the changed positions are also available, so that only the
+ * affected rows need to be written.
+ */
+public class ChangeSet {
+    private final Set<String> changedFields = new LinkedHashSet<>();
+    private final Map<String, Set<Integer>> changedIndices = new HashMap<>();
+    private final Map<String, Set<Integer>> removedIndices = new HashMap<>();
+
+    static ChangeSet diff(JsonObject original, JsonObject current, Set<String> ignoredFields) {
+        ChangeSet changes = new ChangeSet();
+
+        Set<String> fields = new LinkedHashSet<>();
+        for(Map.Entry<String, JsonElement> entry : original.entrySet()) {
+            fields.add(entry.getKey());
+        }
+        for(Map.Entry<String, JsonElement> entry : current.entrySet()) {
+            fields.add(entry.getKey());
+        }
+
+        for(String field : fields) {
+            if(ignoredFields.contains(field)) {
+                continue;
+            }
+
+            JsonElement before = original.get(field);
+            JsonElement after = current.get(field);
+
+            if(Objects.equals(before, after)) {
+                continue;
+            }
+
+            changes.changedFields.add(field);
+
+            if(before != null && after != null && before.isJsonArray() && after.isJsonArray()) {
+                changes.diffArray(field, before.getAsJsonArray(), after.getAsJsonArray());
+            }
+        }
+
+        return changes;
+    }
+
+    private void diffArray(String field, JsonArray before, JsonArray after) {
+        Set<Integer> changed = new TreeSet<>();
+        for(int i = 0; i < after.size(); i++) {
+            if(i >= before.size() || !before.get(i).equals(after.get(i))) {
+                changed.add(i);
+            }
+        }
+        changedIndices.put(field, changed);
+
+        Set<Integer> removed = new TreeSet<>();
+        for(int i = after.size(); i < before.size(); i++) {
+            removed.add(i);
+        }
+        removedIndices.put(field, removed);
+    }
+
+    public boolean isEmpty() {
+        return changedFields.isEmpty();
+    }
+
+    /**
+     * @param field the field's name, as serialized by GSON
+     * @return whether the field changed
+     */
+    public boolean isChanged(String field) {
+        return changedFields.contains(field);
+    }
+
+    public Set<String> getChangedFields() {
+        return Collections.unmodifiableSet(changedFields);
+    }
+
+    /**
+     * Lists the positions of an array or list field that were changed or added.
+     * @param field the field's name, as serialized by GSON
+     * @return the changed positions, in ascending order; empty if the field is unchanged, and
+     * <code>null</code> if it changed but isn't (or wasn't) an array
+     */
+    public Set<Integer> getChangedIndices(String field) {
+        if(!changedFields.contains(field)) {
+            return Collections.emptySet();
+        }
+        Set<Integer> indices = changedIndices.get(field);
+        return indices == null ? null : Collections.unmodifiableSet(indices);
+    }
+
+    /**
+     * Lists the positions of an array or list field that no longer exist, because it got shorter.
+     * @param field the field's name, as serialized by GSON
+     * @return the removed positions, in ascending order; empty if none were removed, and
+     * <code>null</code> if the field changed but isn't (or wasn't) an array
+     */
+    public Set<Integer> getRemovedIndices(String field) {
+        if(!changedFields.contains(field)) {
+            return Collections.emptySet();
+        }
+        Set<Integer> indices = removedIndices.get(field);
+        return indices == null ? null : Collections.unmodifiableSet(indices);
+    }
+}
@@ -3,9 +3,12 @@ package com.github.strophon.data.transfer;
 
 import com.github.strophon.data.DataIO;
 
+import java.util.function.Supplier;
+
 public final class DataSource {
     private ObjectContainer container;
     private DataIO dio;
+    private Supplier<DataIO> dioFactory;
 
     public DataSource(ObjectContainer container) {
         this.container = container;
@@ -15,6 +18,16 @@ public final class DataSource {
         this.dio = dio;
     }
 
+    /**
+     * @param dio the <code>DataIO</code> for the action and its serially run subsequent actions
+     * @param dioFactory opens a separate <code>DataIO</code> for each subsequent action run in
+     *                   parallel (see <code>ActionExecutor</code>); each one is closed after use
+     */
+    public DataSource(DataIO dio, Supplier<DataIO> dioFactory) {
+        this.dio = dio;
+        this.dioFactory = dioFactory;
+    }
+
     public boolean useDatabase() {
         return container == null && dio != null;
     }
@@ -26,5 +39,9 @@ public final class DataSource {
     public DataIO getDataIO() {
         return dio;
     }
+
+    public Supplier<DataIO> getDataIoFactory() {
+        return dioFactory;
+    }
 }
 
@@ -1,13 +1,29 @@
 package com.github.strophon.data.transfer;
 
+import com.github.strophon.data.DataKey;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public abstract class ObjectContainer {
+    private static final Gson GSON = new Gson();
+    private static final Set<String> UNTRACKED_FIELDS = Collections.singleton("subInjections");
+
     private long timestamp;
     private User user;
     private List<ObjectContainer> subInjections;
 
+    // not serialized, so it doesn't show up in its own snapshot
+    private transient JsonObject original;
+    private transient SortedMap<DataKey, Long> versions;
+
     public ObjectContainer() {
         this(null);
     }
@@ -44,4 +60,59 @@ public abstract class ObjectContainer {
     public List<ObjectContainer> getSubInjections() {
         return subInjections;
     }
+
+    /**
+     * Specifies whether the framework snapshots this container when it is injected, so that
+     * <code>getChanges()</code> can be used by <code>Action.writeChanges()</code>. Override to
+     * return <code>true</code> to opt in. Default is <code>false</code>.
+     * @return whether changes are tracked
+     */
+    public boolean isChangeTracked() {
+        return false;
+    }
+
+    /**
+     * Records the state against which <code>getChanges()</code> compares. Called by the framework
+     * at injection time, for containers whose changes are tracked.
+     * @param json this container's GSON serialization
+     */
+    public void captureOriginal(String json) {
+        original = new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    /**
+     * Compares this container with its state when it was injected. Sub-injections are not
+     * included, as each tracks its own changes.
+     * @return the fields that changed
+     * @throws IllegalStateException if this container's changes aren't tracked
+     */
+    public ChangeSet getChanges() {
+        if(original == null) {
+            throw new IllegalStateException("Changes are not tracked for "
+                    + getClass().getSimpleName() + " (see isChangeTracked())");
+        }
+        return ChangeSet.diff(original, GSON.toJsonTree(this).getAsJsonObject(), UNTRACKED_FIELDS);
+    }
+
+    /**
+     * Records the version of a piece of data read without locks, for optimistic execution (see
+     * <code>Action.supportsOptimisticExecution()</code>).
+     * @param key the data's key
+     * @param version the data's version when it was read
+     * @return this container
+     */
+    public ObjectContainer setVersion(DataKey key, long version) {
+        if(versions == null) {
+            versions = new TreeMap<>();
+        }
+        versions.put(key, version);
+        return this;
+    }
+
+    /**
+     * @return the versions recorded with <code>setVersion()</code>, in lock order
+     */
+    public SortedMap<DataKey, Long> getVersions() {
+        return versions == null ? new TreeMap<>() : versions;
+    }
 }
@@ -0,0 +1,43 @@
+package com.github.strophon.email;
+
+import java.util.List;
+
+/**
+ * Persistence for the email outbox. Intended to be implemented by the same class as
+ * <code>DataIO</code>, so that enqueued emails are committed (or rolled back) together with the
+ * user changes that caused them, by <code>commitSql()</code>.
+ */
+public interface EmailOutbox {
+
+    /**
+     * Adds an email to the outbox as part of the current transaction.
+     * @param email the email to send; its ID is assigned by the implementation
+     */
+    void enqueueEmail(OutboxEmail email);
+
+    /**
+     * Claims up to <code>max</code> emails that are due to be sent. Claimed emails must not be
+     * returned to other callers (e.g. other nodes) until they are rescheduled, or until a claim
+     * timeout chosen by the implementation has passed; a <code>SELECT ... FOR UPDATE SKIP
+     * LOCKED</code> plus a lease column is one way to do this.
+     * @param max maximum number of emails to claim
+     * @return the claimed emails, possibly empty
+     */
+    List<OutboxEmail> claimPendingEmails(int max);
+
+    void markEmailSent(long id);
+
+    /**
+     * Records a failed delivery attempt.
+     * @param id the email's ID
+     * @param attempts the number of attempts made so far
+     * @param nextAttemptTime the earliest time to try again, in epoch milliseconds
+     */
+    void rescheduleEmail(long id, int attempts, long nextAttemptTime);
+
+    /**
+     * Gives up on an email after too many failed attempts.
+     * @param id the email's ID
+     */
+    void abandonEmail(long id);
+}
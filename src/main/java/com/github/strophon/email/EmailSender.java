@@ -1,6 +1,9 @@
 package com.github.strophon.email;
 
+import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 public interface EmailSender {
 
@@ -9,4 +12,35 @@ public interface EmailSender {
 
     public boolean sendRecoveryEmail(int userId, InternetAddress email,
                                      String name, String recoveryToken);
+
+    /**
+     * Sends a batch of outbox emails. The default implementation sends them one at a time;
+     * implementations that can reuse a connection across messages (see
+     * <code>SmtpEmailSender</code>) should override it.
+     * @param emails the emails to send
+     * @return whether each email was sent, in the same order as <code>emails</code>
+     */
+    public default List<Boolean> sendEmails(List<OutboxEmail> emails) {
+        List<Boolean> sent = new ArrayList<>(emails.size());
+
+        for(OutboxEmail email : emails) {
+            InternetAddress address;
+            try {
+                address = new InternetAddress(email.getAddress(), true);
+            } catch(AddressException e) {
+                sent.add(false);
+                continue;
+            }
+
+            if(email.getType() == OutboxEmail.Type.REGISTRATION) {
+                sent.add(sendRegistrationEmail(email.getUserId(), address,
+                        email.getName(), email.getToken()));
+            } else {
+                sent.add(sendRecoveryEmail(email.getUserId(), address,
+                        email.getName(), email.getToken()));
+            }
+        }
+
+        return sent;
+    }
 }
@@ -0,0 +1,71 @@
+package com.github.strophon.email;
+
+/**
+ * An email waiting in the outbox. Rows are written in the same transaction as the user change
+ * that caused them, and are delivered later by <code>EmailVerticle</code>.
+ */
+public class OutboxEmail {
+    public enum Type {
+        REGISTRATION, RECOVERY
+    }
+
+    private long id;
+    private Type type;
+    private int userId;
+    private String address;
+    private String name;
+    private String token;
+    private int attempts;
+
+    public OutboxEmail() { }
+
+    public long getId() {
+        return id;
+    }
+    public OutboxEmail setId(long id) {
+        this.id = id;
+        return this;
+    }
+    public Type getType() {
+        return type;
+    }
+    public OutboxEmail setType(Type type) {
+        this.type = type;
+        return this;
+    }
+    public int getUserId() {
+        return userId;
+    }
+    public OutboxEmail setUserId(int userId) {
+        this.userId = userId;
+        return this;
+    }
+    public String getAddress() {
+        return address;
+    }
+    public OutboxEmail setAddress(String address) {
+        this.address = address;
+        return this;
+    }
+    public String getName() {
+        return name;
+    }
+    public OutboxEmail setName(String name) {
+        this.name = name;
+        return this;
+    }
+    public String getToken() {
+        return token;
+    }
+    public OutboxEmail setToken(String token) {
+        this.token = token;
+        return this;
+    }
+    public int getAttempts() {
+        return attempts;
+    }
+    public OutboxEmail setAttempts(int attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.strophon.email;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>EmailSender</code> that keeps a single SMTP connection open and sends every message of a
+ * batch over it, reconnecting only when the server drops the connection. Implementers only need
+ * to build the messages.
+ */
+public abstract class SmtpEmailSender implements EmailSender, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpEmailSender.class);
+
+    private final Session session;
+    private Transport transport;
+
+    protected SmtpEmailSender(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Builds the message for an outbox email.
+     * @param session the mail <code>Session</code> to create the message in
+     * @param email the outbox email, containing the recipient, name and token
+     * @return the message to send
+     * @throws MessagingException if the message cannot be built
+     */
+    protected abstract MimeMessage createMessage(Session session, OutboxEmail email)
+            throws MessagingException;
+
+    @Override
+    public boolean sendRegistrationEmail(int userId, InternetAddress email,
+                                         String name, String emailToken) {
+        return sendSingle(OutboxEmail.Type.REGISTRATION, userId, email, name, emailToken);
+    }
+
+    @Override
+    public boolean sendRecoveryEmail(int userId, InternetAddress email,
+                                     String name, String recoveryToken) {
+        return sendSingle(OutboxEmail.Type.RECOVERY, userId, email, name, recoveryToken);
+    }
+
+    private boolean sendSingle(OutboxEmail.Type type, int userId, InternetAddress email,
+                               String name, String token) {
+        OutboxEmail outboxEmail = new OutboxEmail().setType(type)
+                                                   .setUserId(userId)
+                                                   .setAddress(email.toString())
+                                                   .setName(name)
+                                                   .setToken(token);
+
+        return sendEmails(Collections.singletonList(outboxEmail)).get(0);
+    }
+
+    @Override
+    public synchronized List<Boolean> sendEmails(List<OutboxEmail> emails) {
+        List<Boolean> sent = new ArrayList<>(emails.size());
+
+        for(OutboxEmail email : emails) {
+            sent.add(send(email));
+        }
+
+        return sent;
+    }
+
+    private boolean send(OutboxEmail email) {
+        MimeMessage message;
+        try {
+            message = createMessage(session, email);
+            message.saveChanges();
+        } catch(MessagingException e) {
+            logger.error("Unable to build email " + email.getId() + " for user "
+                    + email.getUserId(), e);
+            return false;
+        }
+
+        try {
+            connect();
+            transport.sendMessage(message, message.getAllRecipients());
+            return true;
+        } catch(MessagingException e) {
+            logger.error("Unable to send email " + email.getId() + " to user "
+                    + email.getUserId(), e);
+            return false;
+        }
+    }
+
+    private void connect() throws MessagingException {
+        if(transport == null) {
+            transport = session.getTransport();
+        }
+
+        if(!transport.isConnected()) {
+            transport.connect();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if(transport != null) {
+            try {
+                transport.close();
+            } catch(MessagingException e) {
+                logger.error("Error closing SMTP transport", e);
+            }
+            transport = null;
+        }
+    }
+}
@@ -1,22 +1,45 @@
 package com.github.strophon.init;
 
 import com.github.strophon.web.ActionVerticle;
+import com.github.strophon.web.EmailVerticle;
 import com.google.gson.Gson;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.auth.ecdsa.EcdsaUser;
 import io.vertx.ext.auth.ecdsa.EcdsaUserData;
 import io.vertx.ext.auth.ecdsa.EcdsaUserRetriever;
 import com.github.strophon.action.ActionType;
 import com.github.strophon.action.input.ActionInput;
 import com.github.strophon.action.output.Event;
+import com.github.strophon.cache.BatchingCacheAccessObject;
 import com.github.strophon.cache.CacheAccessObject;
+import com.github.strophon.data.CachingDataIO;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.DataIOPool;
+import com.github.strophon.data.EntityCache;
+import com.github.strophon.data.EntityCachingDataIO;
+import com.github.strophon.data.EventWriter;
+import com.github.strophon.data.InMemoryStateEngine;
+import com.github.strophon.data.ReplicaRoutingDataIO;
+import com.github.strophon.data.ReplicaSet;
+import com.github.strophon.data.ShardSet;
+import com.github.strophon.data.ShardedDataIO;
+import com.github.strophon.data.UniquenessIndexingDataIO;
+import com.github.strophon.data.UserCache;
+import com.github.strophon.data.transfer.ObjectContainer;
+import com.github.strophon.data.transfer.User;
 import com.github.strophon.email.EmailSender;
+import com.github.strophon.journal.ActionJournal;
+import com.github.strophon.metrics.ContentionMetrics;
+import com.github.strophon.metrics.InstrumentedCacheAccessObject;
+import com.github.strophon.metrics.InstrumentedDataIO;
+import com.github.strophon.metrics.MethodMetrics;
 import com.github.strophon.web.EventVerticle;
 import com.github.strophon.web.PostLoginHandler;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -33,8 +56,33 @@ public interface Instantiator extends EcdsaUserRetriever {
         return () -> new EventVerticle(this);
     }
 
+    default Supplier<Verticle> getEmailVerticleSupplier() {
+        return () -> new EmailVerticle(this);
+    }
+
     CacheAccessObject getCache();
 
+    /**
+     * Specifies the options for each <code>ServerVerticle</code>'s HTTP server (overridden by
+     * <code>ActionServerBuilder.withHttpServerOptions()</code>, if used). The default listens on
+     * port 8080 with <code>TCP_NODELAY</code>, TCP Fast Open, quick ACKs and
+     * <code>SO_REUSEPORT</code> enabled, so that with native transport (see
+     * <code>ActionServerBuilder.getDefaultVertxOptions()</code>) the kernel balances connections
+     * across server instances; these socket options are ignored without native transport.
+     * Response compression is enabled, and HTTP/2 is available over cleartext (h2c), or over
+     * TLS if <code>setUseAlpn(true)</code> and a key store are added. No idle timeout is set; if
+     * one is added, it must be longer than the SockJS heartbeat interval (25 seconds by default).
+     * @return HTTP server options
+     */
+    default HttpServerOptions getHttpServerOptions() {
+        return new HttpServerOptions().setPort(8080)
+                                      .setTcpNoDelay(true)
+                                      .setTcpFastOpen(true)
+                                      .setTcpQuickAck(true)
+                                      .setReusePort(true)
+                                      .setCompressionSupported(true);
+    }
+
     EmailSender createEmailSender();
 
     PostLoginHandler createPostLoginHandler(Vertx vertx);
@@ -45,6 +93,18 @@ public interface Instantiator extends EcdsaUserRetriever {
 
     ActionInput createInputFromString(String in);
 
+    /**
+     * Recreates an action's injection from its GSON serialization, as logged by
+     * <code>Action.logAction()</code>, for replays (see <code>ActionReplayer</code>). Only needs
+     * to be implemented to replay actions.
+     * @param in the serialized container
+     * @param input the input of the action the container was injected into, to determine its type
+     * @return the container
+     */
+    default ObjectContainer createContainerFromString(String in, ActionInput input) {
+        throw new UnsupportedOperationException("createContainerFromString() not implemented");
+    }
+
     DataIO getDataIoWithCache();
 
     DataIO getDataIoWithoutCache();
@@ -54,7 +114,7 @@ public interface Instantiator extends EcdsaUserRetriever {
     EcdsaUser getAuthorizedUser(EcdsaUserData user, String challenge);
 
     default EcdsaUserData getUserData(int userId) {
-        try(DataIO dio = getDataIoWithoutCache()) {
+        try(DataIO dio = openDataIo()) {
             return dio.getUser(userId, false);
         }
     }
@@ -67,4 +127,484 @@ public interface Instantiator extends EcdsaUserRetriever {
     default int getTokenSize() {
         return 20;
     }
+
+    /**
+     * Specifies the maximum number of login events to write in a single batch. Default is 100.
+     * @return maximum login event batch size
+     */
+    default int getLoginEventBatchSize() {
+        return 100;
+    }
+
+    /**
+     * Specifies how long login events may wait in memory before their batch is written, in
+     * milliseconds. Default is 50.
+     * @return login event flush interval, in milliseconds
+     */
+    default long getLoginEventFlushInterval() {
+        return 50;
+    }
+
+    /**
+     * Specifies the number of times a failed batch of login events is written before its events
+     * are written one login at a time. Default is 5.
+     * @return maximum login event batch attempts
+     */
+    default int getLoginEventMaxAttempts() {
+        return 5;
+    }
+
+    /**
+     * Specifies how long a failed batch of login events waits before its first retry, in
+     * milliseconds; the wait doubles with each attempt. Default is 100.
+     * @return login event retry backoff, in milliseconds
+     */
+    default long getLoginEventRetryBackoff() {
+        return 100;
+    }
+
+    /**
+     * Specifies whether logins wait for their login event to be committed before proceeding.
+     * Default is <code>BUFFERED</code>, which does not hold up the login response.
+     * @return durability guarantee for login events
+     */
+    default EventWriter.Durability getLoginEventDurability() {
+        return EventWriter.Durability.BUFFERED;
+    }
+
+    /**
+     * Specifies the length of the sliding window over which each node counts failed requests
+     * per IP, in milliseconds. Default is 60000 (one minute).
+     * @return IP failure window length, in milliseconds
+     */
+    default long getIpFailureWindow() {
+        return 60_000;
+    }
+
+    /**
+     * Specifies how long a node keeps rejecting an IP locally once it has been banned, in
+     * milliseconds. Default is 600000 (ten minutes).
+     * @return local IP ban duration, in milliseconds
+     */
+    default long getLocalIpBanDuration() {
+        return 600_000;
+    }
+
+    /**
+     * Specifies how long a node trusts the cache's report that an IP is not banned, in
+     * milliseconds. Within this time, requests from the IP are not checked against the cache
+     * again; bans made on any node still take effect at once, as they are published on the
+     * event bus. Default is 10000.
+     * @return IP ban check TTL, in milliseconds
+     */
+    default long getIpBanCheckTtl() {
+        return 10_000;
+    }
+
+    /**
+     * Specifies how often locally counted IP failures are flushed to the shared cache, in
+     * milliseconds. Default is 1000.
+     * @return IP failure flush interval, in milliseconds
+     */
+    default long getIpFailureFlushInterval() {
+        return 1000;
+    }
+
+    /**
+     * Specifies whether registration and recovery emails go through the email outbox instead of
+     * being sent during the request. If <code>true</code>, the <code>DataIO</code> objects
+     * returned by this <code>Instantiator</code> must also implement <code>EmailOutbox</code>.
+     * Default is <code>false</code>.
+     * @return whether to use the email outbox
+     */
+    default boolean useEmailOutbox() {
+        return false;
+    }
+
+    /**
+     * Specifies the maximum number of outbox emails claimed and sent together. Default is 50.
+     * @return email outbox batch size
+     */
+    default int getEmailOutboxBatchSize() {
+        return 50;
+    }
+
+    /**
+     * Specifies how often the email outbox is checked for retries and for emails enqueued on other
+     * nodes, in milliseconds. Default is 5000.
+     * @return email outbox poll interval, in milliseconds
+     */
+    default long getEmailOutboxPollInterval() {
+        return 5000;
+    }
+
+    /**
+     * Specifies the number of delivery attempts after which an outbox email is abandoned. Default
+     * is 8.
+     * @return maximum email delivery attempts
+     */
+    default int getEmailMaxAttempts() {
+        return 8;
+    }
+
+    /**
+     * Specifies the delay before the first retry of a failed outbox email, in milliseconds. The
+     * delay doubles with each further attempt. Default is 10000.
+     * @return base email retry delay, in milliseconds
+     */
+    default long getEmailRetryBaseDelay() {
+        return 10_000;
+    }
+
+    /**
+     * Specifies the maximum delay between retries of a failed outbox email, in milliseconds.
+     * Default is 3600000 (one hour).
+     * @return maximum email retry delay, in milliseconds
+     */
+    default long getEmailRetryMaxDelay() {
+        return 3_600_000;
+    }
+
+    /**
+     * Specifies whether registration checks names and emails against an in-memory
+     * <code>UniquenessIndex</code> before querying the database. If <code>true</code>,
+     * <code>DataIO.forEachNameAndEmail()</code> must be implemented, and users must only be added
+     * or updated through <code>DataIO</code>s decorated by <code>decorateDataIo()</code>, or be
+     * published with <code>UniquenessIndex.publish()</code>. Default is <code>false</code>.
+     * @return whether to use the uniqueness index
+     */
+    default boolean useUniquenessIndex() {
+        return false;
+    }
+
+    /**
+     * Specifies the expected number of users, used to size the <code>UniquenessIndex</code>.
+     * Default is 1000000.
+     * @return expected number of users
+     */
+    default long getExpectedUserCount() {
+        return 1_000_000;
+    }
+
+    /**
+     * Specifies the number of threads used for ECDSA key validation and signature verification.
+     * Default is the number of available processors.
+     * @return ECDSA verification pool size
+     */
+    default int getEcdsaVerificationPoolSize() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Specifies the maximum number of parsed ECDSA public keys to keep in memory. Default is
+     * 100000.
+     * @return public key cache size
+     */
+    default long getPublicKeyCacheSize() {
+        return 100_000;
+    }
+
+    /**
+     * Specifies how long a user's secret-token hash is cached for the challenge gateway, in
+     * milliseconds. This bounds how long a token changed outside the framework's own recovery
+     * flow can still be used. Default is 300000 (five minutes).
+     * @return secret token cache TTL, in milliseconds
+     */
+    default long getSecretTokenCacheTtl() {
+        return 300_000;
+    }
+
+    /**
+     * Specifies the maximum number of users whose secret-token hashes are cached. Default is
+     * 1000000.
+     * @return secret token cache size
+     */
+    default long getSecretTokenCacheSize() {
+        return 1_000_000;
+    }
+
+    /**
+     * Specifies whether each verticle's <code>CacheAccessObject</code> is wrapped in a
+     * <code>BatchingCacheAccessObject</code>, which coalesces concurrent IP-ban, challenge and
+     * session ID lookups into multi-key calls. This only helps if the cache implements the
+     * multi-key calls natively. Default is <code>false</code>.
+     * @return whether to batch cache lookups
+     */
+    default boolean batchCacheCalls() {
+        return false;
+    }
+
+    /**
+     * Specifies how long cache lookups are collected before being sent as a batch, in
+     * milliseconds. Default is 0, which collects lookups until the end of the current event-loop
+     * tick and adds no latency.
+     * @return cache batch window, in milliseconds
+     */
+    default long getCacheBatchWindow() {
+        return 0;
+    }
+
+    /**
+     * Wraps the cache used by a verticle in any decorators this <code>Instantiator</code>
+     * specifies. Must be called from the verticle's context.
+     * @param vertx the Vert.x instance
+     * @param cache the cache returned by <code>getCache()</code>
+     * @return the decorated cache
+     */
+    default CacheAccessObject decorateCache(Vertx vertx, CacheAccessObject cache) {
+        if(batchCacheCalls()) {
+            cache = new BatchingCacheAccessObject(vertx, cache, getCacheBatchWindow());
+        }
+
+        MethodMetrics metrics = getCacheMetrics();
+        if(metrics != null) {
+            cache = new InstrumentedCacheAccessObject(cache, metrics);
+        }
+        return cache;
+    }
+
+    /**
+     * Specifies the cache used for unlocked <code>getUser()</code> calls (see
+     * <code>CachingDataIO</code>). Must return the same instance every time it is called, e.g.
+     * <code>new UserCache(100_000, 2000, this::copyUser)</code> created once. The cache is
+     * node-local, so its TTL bounds how long changes made on other nodes can go unseen. Default
+     * is <code>null</code>, for no user cache.
+     * @return user cache, or <code>null</code>
+     */
+    default UserCache getUserCache() {
+        return null;
+    }
+
+    /**
+     * Specifies the read replicas to which unlocked reads are sent (see
+     * <code>ReplicaRoutingDataIO</code>). Must return the same instance every time it is called.
+     * Default is <code>null</code>, for all reads to go to the primary.
+     * @return read replicas, or <code>null</code>
+     */
+    default ReplicaSet getReplicaSet() {
+        return null;
+    }
+
+    /**
+     * Creates an independent copy of a user, for the <code>UserCache</code>. The default
+     * round-trips the user through GSON, so it must be serializable by GSON as its concrete class.
+     * @param user the user to copy
+     * @return the copy
+     */
+    default User copyUser(User user) {
+        return GSON.fromJson(GSON.toJson(user), user.getClass());
+    }
+
+    /**
+     * Wraps a <code>DataIO</code> in any decorators this <code>Instantiator</code> specifies.
+     * @param dio the <code>DataIO</code> to wrap
+     * @return the decorated <code>DataIO</code>
+     */
+    default DataIO decorateDataIo(DataIO dio) {
+        ReplicaSet replicaSet = getReplicaSet();
+        if(replicaSet != null) {
+            dio = new ReplicaRoutingDataIO(dio, replicaSet);
+        }
+
+        if(useUniquenessIndex()) {
+            dio = new UniquenessIndexingDataIO(dio);
+        }
+
+        UserCache userCache = getUserCache();
+        if(userCache != null) {
+            dio = new CachingDataIO(dio, userCache);
+        }
+
+        EntityCache entityCache = getEntityCache();
+        if(entityCache != null) {
+            dio = new EntityCachingDataIO(dio, entityCache);
+        }
+
+        MethodMetrics metrics = getDataIoMetrics();
+        if(metrics != null) {
+            dio = new InstrumentedDataIO(dio, metrics);
+        }
+        return dio;
+    }
+
+    /**
+     * Opens the <code>DataIO</code> used by the framework's verticles and handlers: a
+     * <code>ShardedDataIO</code> if <code>getShardSet()</code> specifies shards, one borrowed
+     * from <code>getDataIoPool()</code> if a pool is specified, or else the one returned by
+     * <code>getDataIoWithCache()</code>, wrapped by <code>decorateDataIo()</code>.
+     * @return decorated <code>DataIO</code>
+     */
+    default DataIO openDataIo() {
+        ShardSet shardSet = getShardSet();
+        if(shardSet != null) {
+            return decorateDataIo(new ShardedDataIO(shardSet));
+        }
+
+        DataIOPool pool = getDataIoPool();
+        return decorateDataIo(pool != null ? pool.borrow() : getDataIoWithCache());
+    }
+
+    /**
+     * Specifies the shards across which users are spread (see <code>ShardedDataIO</code>). If
+     * specified, <code>openDataIo()</code> opens a <code>ShardedDataIO</code> over them, instead
+     * of using <code>getDataIoPool()</code> or <code>getDataIoWithCache()</code>; per-shard pools
+     * can be used as the shards' suppliers. Must return the same instance every time it is called.
+     * Default is <code>null</code>, for a single database.
+     * @return shards, or <code>null</code>
+     */
+    default ShardSet getShardSet() {
+        return null;
+    }
+
+    /**
+     * Specifies the pool from which <code>openDataIo()</code> borrows its <code>DataIO</code>
+     * objects. Must return the same instance every time it is called, e.g.
+     * <code>new DataIOPool(this::getDataIoWithCache, 64)</code> created once; pooled instances are
+     * only reused if they implement <code>DataIO.reset()</code>. Default is <code>null</code>,
+     * for a new <code>DataIO</code> per request.
+     * @return <code>DataIO</code> pool, or <code>null</code>
+     */
+    default DataIOPool getDataIoPool() {
+        return null;
+    }
+
+    /**
+     * Specifies the metrics in which every <code>DataIO</code> call made by the framework is
+     * recorded (see <code>InstrumentedDataIO</code>). Calls are timed as the framework sees them,
+     * i.e. including any other decorators. Must return the same instance every time it is called,
+     * e.g. <code>new MethodMetrics("DataIO", 100)</code> created once. Default is
+     * <code>null</code>, for no instrumentation.
+     * @return <code>DataIO</code> metrics, or <code>null</code>
+     */
+    default MethodMetrics getDataIoMetrics() {
+        return null;
+    }
+
+    /**
+     * Specifies the metrics in which every <code>CacheAccessObject</code> call made by the
+     * framework is recorded (see <code>InstrumentedCacheAccessObject</code>). Must return the same
+     * instance every time it is called. Default is <code>null</code>, for no instrumentation.
+     * @return cache metrics, or <code>null</code>
+     */
+    default MethodMetrics getCacheMetrics() {
+        return null;
+    }
+
+    /**
+     * Specifies the pool on which independent subsequent actions are run in parallel, each with
+     * its own <code>DataIO</code> from <code>openDataIo()</code> (see
+     * <code>Action.getDataKeys()</code>).
+     * IMPORTANT NOTE: the actions block on their <code>DataIO</code> calls, so this should be a
+     * dedicated pool, not <code>ForkJoinPool.commonPool()</code>. Must return the same instance
+     * every time it is called. Also note that serial subsequent actions share the parent action's
+     * <code>Randomizer</code>, while actions run in parallel each draw from their own, seeded from
+     * the parent's in queue order; so with a pool, the same seed gives different subsequent-action
+     * draws than without one, and results are only reproducible with the same setting. Default
+     * is <code>null</code>, for serial execution.
+     * @return subsequent action pool, or <code>null</code>
+     */
+    default ForkJoinPool getSubsequentActionPool() {
+        return null;
+    }
+
+    /**
+     * Specifies how many times an action is run if its transaction keeps losing lock conflicts
+     * (deadlocks or lock wait timeouts; see <code>DataIO.isRetryableFailure()</code>). Actions are
+     * only retried if their <code>DataIO</code> implements <code>reset()</code>. Default is 3.
+     * @return maximum attempts per action
+     */
+    default int getMaxActionAttempts() {
+        return 3;
+    }
+
+    /**
+     * Specifies the base backoff before an action is retried; it doubles with each attempt, and a
+     * random part is added. Default is 20.
+     * @return retry backoff, in milliseconds
+     */
+    default long getActionRetryBackoffMillis() {
+        return 20;
+    }
+
+    /**
+     * Specifies the metrics in which lock conflicts and retries are recorded. Must return the
+     * same instance every time it is called. Default is <code>null</code>, for no metrics.
+     * @return contention metrics, or <code>null</code>
+     */
+    default ContentionMetrics getContentionMetrics() {
+        return null;
+    }
+
+    /**
+     * Specifies whether actions that support it are executed optimistically, i.e. without
+     * locking their data until they write it (see
+     * <code>Action.supportsOptimisticExecution()</code>).
+     * Requires a <code>DataIO</code> that supports version validation and implements
+     * <code>reset()</code>. Default is <code>false</code>.
+     * @return whether to use optimistic execution
+     */
+    default boolean useOptimisticExecution() {
+        return false;
+    }
+
+    /**
+     * Specifies how many times an optimistically executed action is run before falling back to
+     * pessimistic execution, if the data it reads keeps changing. Default is 2.
+     * @return maximum optimistic attempts per action
+     */
+    default int getMaxOptimisticAttempts() {
+        return 2;
+    }
+
+    /**
+     * Specifies the cache through which actions can read entities (see
+     * <code>DataIO.getCachedEntity()</code>). Must return the same instance every time it is
+     * called, e.g. <code>new EntityCache(100_000)</code> created once; the framework connects it
+     * to the event bus, so that entity versions committed on one node invalidate older versions
+     * cached on the others. Default is <code>null</code>, for no entity cache.
+     * @return entity cache, or <code>null</code>
+     */
+    default EntityCache getEntityCache() {
+        return null;
+    }
+
+    /**
+     * Specifies the engine that executes actions against in-memory state, instead of against
+     * <code>openDataIo()</code> (see <code>InMemoryStateEngine</code>). The engine is recovered
+     * when the first <code>ActionVerticle</code> starts. Must return the same instance every time
+     * it is called, e.g. one created once with
+     * <code>new ActionExecutor(getActionTypes(), getTypeRetriever())</code> and
+     * <code>this::createInputFromString</code>. Other verticles and handlers still use
+     * <code>openDataIo()</code>. Default is <code>null</code>, for actions to use the database.
+     * @return state engine, or <code>null</code>
+     */
+    default InMemoryStateEngine getStateEngine() {
+        return null;
+    }
+
+    /**
+     * Specifies the journal that performed actions are written to, instead of being logged with
+     * <code>Action.logAction()</code> (see <code>ActionJournal</code>; read it with
+     * <code>ActionJournalReader</code>). Must return the same instance every time it is called,
+     * e.g. <code>new ActionJournal(Paths.get("audit"), 65536, 64 &lt;&lt; 20, 1000, 32)</code>
+     * created once; it is started when the first <code>ActionVerticle</code> starts, and closed
+     * when the last one stops. Actions are still logged when the journal is full. Default is
+     * <code>null</code>, for actions to be logged.
+     * @return action journal, or <code>null</code>
+     */
+    default ActionJournal getActionJournal() {
+        return null;
+    }
+
+    /**
+     * Specifies the number of threads of the worker pool that runs read-only actions (see
+     * <code>Action.isReadOnly()</code>), so that they don't wait behind writes for the default
+     * worker pool. Read-only actions on a non-blocking <code>DataIO</code> run directly on their
+     * fiber instead. Default is the number of available processors; 0 runs them on the default
+     * worker pool.
+     * @return read-only action pool size
+     */
+    default int getReadOnlyWorkerPoolSize() {
+        return Runtime.getRuntime().availableProcessors();
+    }
 }
@@ -0,0 +1,439 @@
+package com.github.strophon.journal;
+
+import com.github.strophon.action.Action;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, binary replacement for logging performed actions with
+ * <code>Action.logAction()</code>. <code>offer()</code> serializes the action on the calling
+ * thread and puts the record in a bounded, lock-free ring buffer; a single writer thread only
+ * appends records to a journal of memory-mapped segment files (see <code>JournalWriter</code>),
+ * which rotates when a segment is full. Only the newest segments are kept, so the journal's size
+ * on disk is bounded. <code>ActionJournalReader</code> renders records as the JSON
+ * <code>logAction()</code> would have logged.
+ * Each record holds the time the action was offered, a flags byte, and the input, seed, result,
+ * and (depending on the flags) original injection, injection and events, each length-prefixed.
+ * Each <code>start()</code> must be matched by a <code>close()</code> (e.g. in the verticle's
+ * <code>stop()</code>); the last <code>close()</code> writes the accepted actions and stops the
+ * journal.
+ */
+public class ActionJournal {
+    private static final Logger logger = LoggerFactory.getLogger(ActionJournal.class);
+    private static final Gson GSON = new Gson();
+
+    public static final String PREFIX = "audit";
+
+    static final int HAS_SEED = 1;
+    static final int DEBUG = 2;
+    static final int TRACE = 4;
+
+    private static final int DEFAULT_MAX_SEGMENTS = 32;
+
+    // the writer is unparked by offer(), so this only bounds how late an idle flush can be
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long flushIntervalNanos;
+
+    // bounded multi-producer queue: each slot's sequence says whether it's free to write or read
+    private final byte[][] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // only used by the writer thread
+
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger offering = new AtomicInteger(); // offers that may still publish
+    private volatile boolean closed;
+    private volatile boolean idle; // the writer is parked, or about to park
+    private volatile Thread writer;
+    private int users; // guarded by this
+
+    /**
+     * Creates a journal that keeps its 32 newest segments.
+     * @param directory the journal's directory
+     * @param capacity the number of actions that can wait to be written, rounded up to a power
+     *                 of two
+     * @param segmentSize the size of each segment file, in bytes
+     * @param flushIntervalMillis how often the journal is written to the disk when idle, in
+     *                            milliseconds
+     */
+    public ActionJournal(Path directory, int capacity, int segmentSize, long flushIntervalMillis) {
+        this(directory, capacity, segmentSize, flushIntervalMillis, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * @param directory the journal's directory
+     * @param capacity the number of actions that can wait to be written, rounded up to a power
+     *                 of two
+     * @param segmentSize the size of each segment file, in bytes
+     * @param flushIntervalMillis how often the journal is written to the disk when idle, in
+     *                            milliseconds
+     * @param maxSegments the number of segments kept, including the one being written; older
+     *                    segments are deleted when the journal rotates
+     */
+    public ActionJournal(Path directory, int capacity, int segmentSize, long flushIntervalMillis,
+                         int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        slots = new byte[size][];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Opens the journal and starts its writer thread, if this is the first call.
+     * @throws IllegalStateException if the journal has been closed
+     */
+    public synchronized void start() {
+        if(closed) {
+            throw new IllegalStateException("Action journal is closed");
+        }
+
+        users++;
+        if(writer != null) {
+            return;
+        }
+
+        JournalWriter journal;
+        try {
+            journal = new JournalWriter(directory, PREFIX, segmentSize);
+        } catch(IOException e) {
+            users--;
+            throw new UncheckedIOException(e);
+        }
+
+        writer = new Thread(() -> run(journal), "action-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a performed action to be journaled, without blocking. The action is serialized
+     * before this returns, so it may be modified afterwards.
+     * @param action the performed action
+     * @param debug whether to include the original injection, as <code>logAction()</code> does
+     *              at debug level
+     * @param trace whether to include the injection and events, as at trace level
+     * @return <code>false</code> if the journal is full or closed, or the action can't be
+     * journaled, in which case the caller should log the action some other way
+     */
+    public boolean offer(Action action, boolean debug, boolean trace) {
+        // counted before checking closed, so that the writer can't stop before this publishes
+        offering.incrementAndGet();
+        try {
+            if(closed || writer == null) {
+                rejected.increment();
+                return false;
+            }
+
+            byte[] record;
+            try {
+                record = encode(action, System.currentTimeMillis(), debug, trace);
+            } catch(RuntimeException e) {
+                logger.error("Failed to serialize action for the journal", e);
+                rejected.increment();
+                return false;
+            }
+
+            if(4 + record.length + 4 > segmentSize || !enqueue(record)) {
+                rejected.increment();
+                return false;
+            }
+        } finally {
+            offering.decrementAndGet();
+        }
+
+        if(idle) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private boolean enqueue(byte[] record) {
+        while(true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    slots[index] = record;
+                    // a full write, so that the writer sees it if it then reads idle as false
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if(difference < 0) { // the writer hasn't freed this slot yet
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Releases a <code>start()</code>. The last release stops accepting actions, and waits for
+     * the writer thread to write every action accepted.
+     */
+    public void close() {
+        Thread writer;
+        synchronized(this) {
+            if(users > 0 && --users > 0) {
+                return;
+            }
+            closed = true;
+            writer = this.writer;
+        }
+
+        if(writer != null) {
+            LockSupport.unpark(writer);
+        }
+        if(writer != null && writer != Thread.currentThread()) {
+            try {
+                writer.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of actions not accepted because the journal was full or closed, or
+     * because they couldn't be journaled
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private byte[] poll() {
+        int index = (int) head & mask;
+        if(sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        byte[] record = slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, head + slots.length); // frees the slot for the next lap
+        head++;
+        return record;
+    }
+
+    private void run(JournalWriter journal) {
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+
+        long segment = journal.getSegment();
+        deleteOldSegments();
+
+        while(true) {
+            byte[] record = poll();
+
+            if(record != null) {
+                write(journal, record);
+                dirty = true;
+
+                if(journal.getSegment() != segment) { // rotated
+                    segment = journal.getSegment();
+                    deleteOldSegments();
+                }
+                continue;
+            }
+
+            if(closed && offering.get() == 0) {
+                if(head == tail.get()) {
+                    break; // every claimed slot has been written
+                }
+                Thread.yield(); // a slot was claimed, but not yet published
+                continue;
+            }
+
+            if(dirty && System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                journal.force();
+                lastFlush = System.nanoTime();
+                dirty = false;
+            }
+
+            idle = true;
+            // checked again after announcing the park, so that an entry published meanwhile
+            // isn't left waiting for the timeout
+            if(sequences.get((int) head & mask) != head + 1 && !closed) {
+                long timeout = dirty
+                        ? Math.max(1, flushIntervalNanos - (System.nanoTime() - lastFlush))
+                        : MAX_IDLE_PARK_NANOS;
+                LockSupport.parkNanos(this, Math.min(timeout, MAX_IDLE_PARK_NANOS));
+            }
+            idle = false;
+        }
+
+        try {
+            journal.close();
+        } catch(IOException e) {
+            logger.error("Failed to close action journal", e);
+        }
+    }
+
+    private void write(JournalWriter journal, byte[] record) {
+        try {
+            journal.append(record);
+        } catch(RuntimeException e) {
+            logger.error("Failed to journal action; logging it instead", e);
+            logger.info("Action performed: " + render(ByteBuffer.wrap(record)).json);
+        }
+    }
+
+    // the oldest segments beyond maxSegments, the current one included
+    private void deleteOldSegments() {
+        try {
+            List<Path> segments = JournalReader.listSegments(directory, PREFIX);
+            for(int i = 0; i < segments.size() - maxSegments; i++) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        } catch(IOException e) {
+            logger.error("Failed to delete old action journal segments", e);
+        }
+    }
+
+    // strings are encoded first, so that the record is allocated once, at its exact size
+    private static byte[] encode(Action action, long timestamp, boolean debug, boolean trace) {
+        byte[] seed = action.needsRandomNumbers() ? action.getSeed() : null;
+
+        int flags = (seed != null ? HAS_SEED : 0)
+                | (debug ? DEBUG : 0)
+                | (trace ? TRACE : 0);
+
+        byte[] input = toBytes(GSON.toJson(action.getInput()));
+        byte[] result = toBytes(GSON.toJson(action.getError() == null
+                ? action.getResult() : action.getError()));
+        byte[] originalInjection = debug ? toBytes(action.getOriginalInjection()) : null;
+        byte[] injection = trace ? toBytes(action.getInjectionAsString()) : null;
+        byte[] events = trace ? toBytes(GSON.toJson(action.getEvents())) : null;
+
+        int size = 8 + 1 + sizeOf(input) + sizeOf(result);
+        if(seed != null) {
+            size += 4 + seed.length;
+        }
+        if(debug) {
+            size += sizeOf(originalInjection);
+        }
+        if(trace) {
+            size += sizeOf(injection) + sizeOf(events);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putLong(timestamp);
+        buffer.put((byte) flags);
+
+        putBytes(buffer, input);
+        if(seed != null) {
+            buffer.putInt(seed.length);
+            buffer.put(seed);
+        }
+        putBytes(buffer, result);
+
+        if(debug) {
+            putBytes(buffer, originalInjection);
+        }
+        if(trace) {
+            putBytes(buffer, injection);
+            putBytes(buffer, events);
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if(bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a record written by the writer thread.
+     * @param record the record
+     * @return the time the action was journaled, and the JSON <code>logAction()</code> would have
+     * logged for it
+     */
+    static Rendered render(ByteBuffer record) {
+        long timestamp = record.getLong();
+        int flags = record.get();
+
+        JsonObject object = new JsonObject();
+
+        object.addProperty("input", getString(record));
+
+        if((flags & HAS_SEED) != 0) {
+            byte[] seed = new byte[record.getInt()];
+            record.get(seed);
+            object.addProperty("seed", GSON.toJson(seed));
+        }
+
+        object.addProperty("result", getString(record));
+
+        if((flags & DEBUG) != 0) {
+            object.addProperty("originalInjection", getString(record));
+        }
+
+        if((flags & TRACE) != 0) {
+            object.addProperty("injection", getString(record));
+            object.addProperty("events", getString(record));
+        }
+
+        return new Rendered(timestamp, object.toString());
+    }
+
+    static final class Rendered {
+        final long timestamp;
+        final String json;
+
+        Rendered(long timestamp, String json) {
+            this.timestamp = timestamp;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.strophon.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Renders the records of an <code>ActionJournal</code> as the lines <code>Action.logAction()</code>
+ * would have logged, each preceded by the time the action was journaled, so that existing tools
+ * (e.g. <code>ActionReplayer</code>) can read them.
+ * Usage: <code>ActionJournalReader &lt;journal directory&gt; [first segment]</code>
+ */
+public final class ActionJournalReader {
+    private static final String MARKER = "Action performed: ";
+
+    private ActionJournalReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: ActionJournalReader <journal directory> [first segment]");
+            System.exit(1);
+        }
+
+        long fromSegment = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+        read(Paths.get(args[0]), fromSegment, System.out::println);
+    }
+
+    /**
+     * Renders every journaled action, from the given segment on.
+     * @param directory the journal's directory
+     * @param fromSegment the number of the first segment to read
+     * @param lineConsumer receives one line per action
+     * @return the number of actions read
+     * @throws IOException if a segment can't be read
+     */
+    public static long read(Path directory, long fromSegment, Consumer<String> lineConsumer)
+            throws IOException {
+        return JournalReader.read(directory, ActionJournal.PREFIX, fromSegment, record -> {
+            ActionJournal.Rendered rendered = ActionJournal.render(record);
+            lineConsumer.accept(Instant.ofEpochMilli(rendered.timestamp) + " "
+                    + MARKER + rendered.json);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.strophon.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the records of a journal written by <code>JournalWriter</code>, in the order they were
+ * written. A segment's records end at its end marker, or at a record that was only partly written.
+ */
+public final class JournalReader {
+    private static final String SUFFIX = ".seg";
+
+    private JournalReader() {
+    }
+
+    /**
+     * Passes every record, from the given segment on, to a consumer.
+     * @param directory the journal's directory
+     * @param prefix the segment file name prefix
+     * @param fromSegment the number of the first segment to read
+     * @param consumer receives each record, as a read-only buffer positioned at its first byte;
+     *                 the buffer is only valid during the call
+     * @return the number of records read
+     * @throws IOException if a segment can't be read
+     */
+    public static long read(Path directory, String prefix, long fromSegment,
+                            Consumer<ByteBuffer> consumer) throws IOException {
+        long count = 0;
+
+        for(Path path : listSegments(directory, prefix)) {
+            if(segmentNumber(path, prefix) < fromSegment) {
+                continue;
+            }
+
+            MappedByteBuffer segment;
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            while(segment.remaining() >= 4) {
+                int length = segment.getInt();
+                if(length <= 0 || length > segment.remaining()) {
+                    break;
+                }
+
+                ByteBuffer record = segment.slice();
+                record.limit(length);
+                consumer.accept(record.asReadOnlyBuffer());
+
+                segment.position(segment.position() + length);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param directory the journal's directory
+     * @param prefix the segment file name prefix
+     * @return the journal's segment files, in order
+     * @throws IOException if the directory can't be listed
+     */
+    public static List<Path> listSegments(Path directory, String prefix) throws IOException {
+        if(!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+
+        try(Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> isSegment(path, prefix)).forEach(segments::add);
+            segments.sort(Comparator.comparingLong(path -> segmentNumber(path, prefix)));
+            return segments;
+        }
+    }
+
+    public static long segmentNumber(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    }
+
+    static Path segmentPath(Path directory, String prefix, long segment) {
+        return directory.resolve(String.format("%s-%016d%s", prefix, segment, SUFFIX));
+    }
+
+    private static boolean isSegment(Path path, String prefix) {
+        String name = path.getFileName().toString();
+        if(!name.startsWith(prefix + "-") || !name.endsWith(SUFFIX)
+                || name.length() != prefix.length() + 1 + 16 + SUFFIX.length()) {
+            return false;
+        }
+        return name.substring(prefix.length() + 1, name.length() - SUFFIX.length())
+                   .chars().allMatch(Character::isDigit);
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.strophon.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends length-prefixed records to a journal of memory-mapped segment files. Each segment is
+ * a fixed-size file named <code>&lt;prefix&gt;-&lt;number&gt;.seg</code>; when a record doesn't fit
+ * in the current segment, the writer rolls over to the next one. A record is an
+ * <code>int</code> length followed by that many bytes; the length is written after the bytes,
+ * so that a reader never sees a partly written record. A zero length (the file's initial
+ * content) marks the end of a segment. See <code>JournalReader</code>.
+ * Records written to the mapping survive a crash of the process, but only reach the disk when
+ * the operating system writes them back, or when <code>force()</code> is called.
+ * IMPORTANT NOTE: instances are not thread-safe; each journal must have a single writer.
+ */
+public class JournalWriter implements Closeable {
+    private static final int END_MARKER_SIZE = 4;
+
+    private final Path directory;
+    private final String prefix;
+    private final int segmentSize;
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Opens a journal for writing. Existing segments are kept, and writing starts in a new
+     * segment after the last of them.
+     * @param directory the journal's directory, created if necessary
+     * @param prefix the segment file name prefix
+     * @param segmentSize the size of each segment file, in bytes
+     * @throws IOException if the first segment can't be created
+     */
+    public JournalWriter(Path directory, String prefix, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+
+        List<Path> segments = JournalReader.listSegments(directory, prefix);
+        segment = segments.isEmpty()
+                ? 0 : JournalReader.segmentNumber(segments.get(segments.size() - 1), prefix) + 1;
+
+        open(segment);
+    }
+
+    public void append(byte[] record) {
+        append(record, 0, record.length);
+    }
+
+    /**
+     * Appends a record, rolling over to a new segment if it doesn't fit in the current one.
+     * @param record the buffer holding the record
+     * @param offset the record's offset in the buffer
+     * @param length the record's length, in bytes
+     * @throws IllegalArgumentException if the record is empty, or can't fit in a segment
+     */
+    public void append(byte[] record, int offset, int length) {
+        if(length <= 0 || 4 + length + END_MARKER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes can't be written"
+                    + " to segments of " + segmentSize + " bytes");
+        }
+
+        if(buffer.remaining() < 4 + length + END_MARKER_SIZE) {
+            rollOver();
+        }
+
+        int position = buffer.position();
+        buffer.position(position + 4);
+        buffer.put(record, offset, length);
+        buffer.putInt(position, length);
+    }
+
+    /**
+     * Starts a new segment, even if the current one isn't full, e.g. so that the records written
+     * after a snapshot start a segment of their own.
+     * @return the new segment's number
+     */
+    public long rollOver() {
+        try {
+            closeSegment();
+            open(++segment);
+            return segment;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of the segment currently written to
+     */
+    public long getSegment() {
+        return segment;
+    }
+
+    /**
+     * Writes the current segment's records to the disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void open(long segment) throws IOException {
+        channel = FileChannel.open(JournalReader.segmentPath(directory, prefix, segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void closeSegment() throws IOException {
+        buffer.force();
+        channel.close(); // the mapping stays valid until it's garbage collected
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.strophon.metrics;
+
+import com.github.strophon.data.DataKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Lock contention seen by <code>ActionExecutor.executeWithRetry()</code>: how many transactions
+ * lost a lock conflict, how many actions ran out of attempts, and which action types and keys (see
+ * <code>Action.getDataKeys()</code>) were involved. Recording is wait-free. One instance is meant
+ * to be shared by all executors.
+ */
+public class ContentionMetrics {
+    private final ConcurrentMap<String, LongAdder> typeConflicts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DataKey, LongAdder> keyConflicts = new ConcurrentHashMap<>();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * Records a transaction that lost a lock conflict.
+     * @param actionType the type of the action whose transaction failed
+     * @param keys the action's declared keys, or <code>null</code> if it doesn't declare them
+     */
+    public void recordConflict(String actionType, Collection<DataKey> keys) {
+        conflicts.increment();
+        typeConflicts.computeIfAbsent(String.valueOf(actionType), t -> new LongAdder()).increment();
+
+        if(keys != null) {
+            for(DataKey key : keys) {
+                keyConflicts.computeIfAbsent(key, k -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * Records an action that failed because it lost a lock conflict on its last attempt.
+     */
+    public void recordExhausted() {
+        exhausted.increment();
+    }
+
+    /**
+     * @return the number of lost lock conflicts since the last report
+     */
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    /**
+     * @param key a data key
+     * @return the number of lost lock conflicts involving the key since the last report
+     */
+    public long getConflictCount(DataKey key) {
+        LongAdder count = keyConflicts.get(key);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the number of actions that ran out of attempts since the last report
+     */
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    /**
+     * Reports the lock conflicts since the previous report: totals, conflicts per action type,
+     * and the most contended keys. Nothing is reported if there were no conflicts.
+     * @param reportFunction receives the report one line at a time (e.g.
+     *                       <code>logger::info</code>)
+     * @param maxKeys the maximum number of keys to report
+     */
+    public synchronized void report(Consumer<Object> reportFunction, int maxKeys) {
+        long conflictCount = conflicts.sumThenReset();
+        long exhaustedCount = exhausted.sumThenReset();
+
+        Map<String, Long> types = drain(typeConflicts);
+        Map<DataKey, Long> keys = drain(keyConflicts);
+
+        if(conflictCount == 0 && exhaustedCount == 0) {
+            return;
+        }
+
+        reportFunction.accept("Lock contention: conflicts=" + conflictCount
+                + " exhausted=" + exhaustedCount);
+
+        for(Map.Entry<String, Long> entry : types.entrySet()) {
+            reportFunction.accept("Lock contention: type=" + entry.getKey()
+                    + " conflicts=" + entry.getValue());
+        }
+
+        List<Map.Entry<DataKey, Long>> sortedKeys = new ArrayList<>(keys.entrySet());
+        sortedKeys.sort(Map.Entry.<DataKey, Long>comparingByValue().reversed());
+
+        for(Map.Entry<DataKey, Long> entry :
+                sortedKeys.subList(0, Math.min(maxKeys, sortedKeys.size()))) {
+            reportFunction.accept("Lock contention: key=" + entry.getKey()
+                    + " conflicts=" + entry.getValue());
+        }
+    }
+
+    // a conflict recorded while its counter is being removed may be lost, which is fine for metrics
+    private static <K> Map<K, Long> drain(ConcurrentMap<K, LongAdder> counters) {
+        Map<K, Long> counts = new HashMap<>();
+        for(Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if(count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        counters.values().removeIf(count -> count.sum() == 0);
+        return counts;
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.strophon.metrics;
+
+import com.github.strophon.cache.CacheAccessObject;
+import com.github.strophon.cache.ForwardingCacheAccessObject;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <code>CacheAccessObject</code> decorator that records the latency (until the result handler is
+ * called), errors and calls in flight of each method in a shared <code>MethodMetrics</code>.
+ */
+public class InstrumentedCacheAccessObject extends ForwardingCacheAccessObject {
+    private final MethodMetrics.MethodStats checkForIpBanStats;
+    private final MethodMetrics.MethodStats checkForIpBansStats;
+    private final MethodMetrics.MethodStats logIpForPotentialBanStats;
+    private final MethodMetrics.MethodStats setChallengeStats;
+    private final MethodMetrics.MethodStats getChallengeStats;
+    private final MethodMetrics.MethodStats getChallengesStats;
+    private final MethodMetrics.MethodStats removeChallengeStats;
+    private final MethodMetrics.MethodStats setUserSessionIdStats;
+    private final MethodMetrics.MethodStats getUserSessionIdStats;
+    private final MethodMetrics.MethodStats getUserSessionIdsStats;
+    private final MethodMetrics.MethodStats removeUserSessionIdStats;
+    private final MethodMetrics.MethodStats getAllUserSessionIdsStats;
+    private final MethodMetrics.MethodStats addEmailTokenStats;
+    private final MethodMetrics.MethodStats getEmailTokenStats;
+    private final MethodMetrics.MethodStats removeEmailTokenStats;
+    private final MethodMetrics.MethodStats pauseStats;
+    private final MethodMetrics.MethodStats isPausedStats;
+    private final MethodMetrics.MethodStats resumeStats;
+
+    public InstrumentedCacheAccessObject(CacheAccessObject delegate, MethodMetrics metrics) {
+        super(delegate);
+        checkForIpBanStats = metrics.method("checkForIpBan");
+        checkForIpBansStats = metrics.method("checkForIpBans");
+        logIpForPotentialBanStats = metrics.method("logIpForPotentialBan");
+        setChallengeStats = metrics.method("setChallenge");
+        getChallengeStats = metrics.method("getChallenge");
+        getChallengesStats = metrics.method("getChallenges");
+        removeChallengeStats = metrics.method("removeChallenge");
+        setUserSessionIdStats = metrics.method("setUserSessionId");
+        getUserSessionIdStats = metrics.method("getUserSessionId");
+        getUserSessionIdsStats = metrics.method("getUserSessionIds");
+        removeUserSessionIdStats = metrics.method("removeUserSessionId");
+        getAllUserSessionIdsStats = metrics.method("getAllUserSessionIds");
+        addEmailTokenStats = metrics.method("addEmailToken");
+        getEmailTokenStats = metrics.method("getEmailToken");
+        removeEmailTokenStats = metrics.method("removeEmailToken");
+        pauseStats = metrics.method("pause");
+        isPausedStats = metrics.method("isPaused");
+        resumeStats = metrics.method("resume");
+    }
+
+    @Override
+    public void checkForIpBan(String ip, Handler<AsyncResult<Boolean>> handler) {
+        long start = checkForIpBanStats.start();
+        try {
+            delegate.checkForIpBan(ip, checkForIpBanStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw checkForIpBanStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void checkForIpBans(Collection<String> ips,
+                               Handler<AsyncResult<Map<String, Boolean>>> handler) {
+        long start = checkForIpBansStats.start();
+        try {
+            delegate.checkForIpBans(ips, checkForIpBansStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw checkForIpBansStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, Handler<AsyncResult<Integer>> handler) {
+        long start = logIpForPotentialBanStats.start();
+        try {
+            delegate.logIpForPotentialBan(ip, logIpForPotentialBanStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw logIpForPotentialBanStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void logIpForPotentialBan(String ip, int count, Handler<AsyncResult<Integer>> handler) {
+        long start = logIpForPotentialBanStats.start();
+        try {
+            delegate.logIpForPotentialBan(ip, count,
+                    logIpForPotentialBanStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw logIpForPotentialBanStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void setChallenge(int userId, String challenge, Handler<AsyncResult<String>> handler) {
+        long start = setChallengeStats.start();
+        try {
+            delegate.setChallenge(userId, challenge, setChallengeStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw setChallengeStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getChallenge(int userId, Handler<AsyncResult<String>> handler) {
+        long start = getChallengeStats.start();
+        try {
+            delegate.getChallenge(userId, getChallengeStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getChallengeStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getChallenges(Collection<Integer> userIds,
+                              Handler<AsyncResult<Map<Integer, String>>> handler) {
+        long start = getChallengesStats.start();
+        try {
+            delegate.getChallenges(userIds, getChallengesStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getChallengesStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void removeChallenge(int userId, Handler<AsyncResult<Void>> handler) {
+        long start = removeChallengeStats.start();
+        try {
+            delegate.removeChallenge(userId, removeChallengeStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw removeChallengeStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void setUserSessionId(int userId, String sessionId,
+                                 Handler<AsyncResult<String>> handler) {
+        long start = setUserSessionIdStats.start();
+        try {
+            delegate.setUserSessionId(userId, sessionId,
+                    setUserSessionIdStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw setUserSessionIdStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getUserSessionId(int userId, Handler<AsyncResult<String>> handler) {
+        long start = getUserSessionIdStats.start();
+        try {
+            delegate.getUserSessionId(userId, getUserSessionIdStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getUserSessionIdStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getUserSessionIds(Collection<Integer> userIds,
+                                  Handler<AsyncResult<Map<Integer, String>>> handler) {
+        long start = getUserSessionIdsStats.start();
+        try {
+            delegate.getUserSessionIds(userIds, getUserSessionIdsStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getUserSessionIdsStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void removeUserSessionId(int userId, Handler<AsyncResult<Long>> handler) {
+        long start = removeUserSessionIdStats.start();
+        try {
+            delegate.removeUserSessionId(userId, removeUserSessionIdStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw removeUserSessionIdStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getAllUserSessionIds(Handler<AsyncResult<Map<Integer, String>>> handler) {
+        long start = getAllUserSessionIdsStats.start();
+        try {
+            delegate.getAllUserSessionIds(getAllUserSessionIdsStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getAllUserSessionIdsStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void addEmailToken(int userId, String token, Handler<AsyncResult<String>> handler) {
+        long start = addEmailTokenStats.start();
+        try {
+            delegate.addEmailToken(userId, token, addEmailTokenStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw addEmailTokenStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void getEmailToken(int userId, Handler<AsyncResult<String>> handler) {
+        long start = getEmailTokenStats.start();
+        try {
+            delegate.getEmailToken(userId, getEmailTokenStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw getEmailTokenStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void removeEmailToken(int userId, Handler<AsyncResult<Long>> handler) {
+        long start = removeEmailTokenStats.start();
+        try {
+            delegate.removeEmailToken(userId, removeEmailTokenStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw removeEmailTokenStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void pause(Handler<AsyncResult<Void>> handler) {
+        long start = pauseStats.start();
+        try {
+            delegate.pause(pauseStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw pauseStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void isPaused(Handler<AsyncResult<Boolean>> handler) {
+        long start = isPausedStats.start();
+        try {
+            delegate.isPaused(isPausedStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw isPausedStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void resume(Handler<AsyncResult<Boolean>> handler) {
+        long start = resumeStats.start();
+        try {
+            delegate.resume(resumeStats.timed(start, handler));
+        } catch(RuntimeException e) {
+            throw resumeStats.failed(start, e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.strophon.metrics;
+
+import com.github.strophon.action.output.Event;
+import com.github.strophon.data.DataIO;
+import com.github.strophon.data.DataKey;
+import com.github.strophon.data.ForwardingDataIO;
+import com.github.strophon.data.transfer.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * <code>DataIO</code> decorator that records the latency, errors and calls in flight of each
+ * method in a shared <code>MethodMetrics</code>.
+ */
+public class InstrumentedDataIO extends ForwardingDataIO {
+    private final MethodMetrics.MethodStats commitSqlStats;
+    private final MethodMetrics.MethodStats closeStats;
+    private final MethodMetrics.MethodStats getUserStats;
+    private final MethodMetrics.MethodStats getUserByEmailStats;
+    private final MethodMetrics.MethodStats setUserEmailConfirmedStats;
+    private final MethodMetrics.MethodStats addEventsStats;
+    private final MethodMetrics.MethodStats markEventSeenStats;
+    private final MethodMetrics.MethodStats unseenEventsStats;
+    private final MethodMetrics.MethodStats isNameUsedStats;
+    private final MethodMetrics.MethodStats isEmailUsedStats;
+    private final MethodMetrics.MethodStats addUserStats;
+    private final MethodMetrics.MethodStats updateUserStats;
+    private final MethodMetrics.MethodStats deleteUserStats;
+    private final MethodMetrics.MethodStats fetchAndLockStats;
+    private final MethodMetrics.MethodStats validateVersionsStats;
+
+    public InstrumentedDataIO(DataIO delegate, MethodMetrics metrics) {
+        super(delegate);
+        commitSqlStats = metrics.method("commitSql");
+        closeStats = metrics.method("close");
+        getUserStats = metrics.method("getUser");
+        getUserByEmailStats = metrics.method("getUserByEmail");
+        setUserEmailConfirmedStats = metrics.method("setUserEmailConfirmed");
+        addEventsStats = metrics.method("addEvents");
+        markEventSeenStats = metrics.method("markEventSeen");
+        unseenEventsStats = metrics.method("getUnseenEventsSinceFirstUnseen");
+        isNameUsedStats = metrics.method("isNameUsed");
+        isEmailUsedStats = metrics.method("isEmailUsed");
+        addUserStats = metrics.method("addUser");
+        updateUserStats = metrics.method("updateUser");
+        deleteUserStats = metrics.method("deleteUser");
+        fetchAndLockStats = metrics.method("fetchAndLock");
+        validateVersionsStats = metrics.method("lockAndValidateVersions");
+    }
+
+    @Override
+    public void commitSql() {
+        long start = commitSqlStats.start();
+        try {
+            delegate.commitSql();
+            commitSqlStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw commitSqlStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void commitSql(boolean force) {
+        long start = commitSqlStats.start();
+        try {
+            delegate.commitSql(force);
+            commitSqlStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw commitSqlStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        long start = closeStats.start();
+        try {
+            delegate.close();
+            closeStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw closeStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public User getUser(int id, boolean lock) {
+        long start = getUserStats.start();
+        try {
+            return getUserStats.succeeded(start, delegate.getUser(id, lock));
+        } catch(RuntimeException e) {
+            throw getUserStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        long start = getUserByEmailStats.start();
+        try {
+            return getUserByEmailStats.succeeded(start, delegate.getUserByEmail(email));
+        } catch(RuntimeException e) {
+            throw getUserByEmailStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void setUserEmailConfirmed(int userId) {
+        long start = setUserEmailConfirmedStats.start();
+        try {
+            delegate.setUserEmailConfirmed(userId);
+            setUserEmailConfirmedStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw setUserEmailConfirmedStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void addEvents(List<Event> events) {
+        long start = addEventsStats.start();
+        try {
+            delegate.addEvents(events);
+            addEventsStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw addEventsStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void markEventSeen(int eventId) {
+        long start = markEventSeenStats.start();
+        try {
+            delegate.markEventSeen(eventId);
+            markEventSeenStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw markEventSeenStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void markEventSeen(int userId, int eventId) {
+        long start = markEventSeenStats.start();
+        try {
+            delegate.markEventSeen(userId, eventId);
+            markEventSeenStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw markEventSeenStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public List<? extends Event> getUnseenEventsSinceFirstUnseen(int userId) {
+        long start = unseenEventsStats.start();
+        try {
+            return unseenEventsStats.succeeded(start,
+                    delegate.getUnseenEventsSinceFirstUnseen(userId));
+        } catch(RuntimeException e) {
+            throw unseenEventsStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public boolean isNameUsed(String name) {
+        long start = isNameUsedStats.start();
+        try {
+            return isNameUsedStats.succeeded(start, delegate.isNameUsed(name));
+        } catch(RuntimeException e) {
+            throw isNameUsedStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public boolean isEmailUsed(String email) {
+        long start = isEmailUsedStats.start();
+        try {
+            return isEmailUsedStats.succeeded(start, delegate.isEmailUsed(email));
+        } catch(RuntimeException e) {
+            throw isEmailUsedStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void addUser(User user) {
+        long start = addUserStats.start();
+        try {
+            delegate.addUser(user);
+            addUserStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw addUserStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void updateUser(User user) {
+        long start = updateUserStats.start();
+        try {
+            delegate.updateUser(user);
+            updateUserStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw updateUserStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void deleteUser(User user) {
+        long start = deleteUserStats.start();
+        try {
+            delegate.deleteUser(user);
+            deleteUserStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw deleteUserStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public Map<DataKey, Object> fetchAndLock(SortedSet<DataKey> keys) {
+        long start = fetchAndLockStats.start();
+        try {
+            return fetchAndLockStats.succeeded(start, delegate.fetchAndLock(keys));
+        } catch(RuntimeException e) {
+            throw fetchAndLockStats.failed(start, e);
+        }
+    }
+
+    @Override
+    public void lockAndValidateVersions(SortedMap<DataKey, Long> versions) {
+        long start = validateVersionsStats.start();
+        try {
+            delegate.lockAndValidateVersions(versions);
+            validateVersionsStats.succeeded(start);
+        } catch(RuntimeException e) {
+            throw validateVersionsStats.failed(start, e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.strophon.metrics;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Per-method call metrics for an instrumented interface (see <code>InstrumentedDataIO</code> and
+ * <code>InstrumentedCacheAccessObject</code>): a latency histogram, an error count and the number
+ * of calls in flight. Recording is wait-free; histograms are kept in microseconds, with three
+ * significant digits. Calls slower than the threshold are also logged individually.
+ * One instance is meant to be shared by all instrumented objects of the same interface.
+ */
+public class MethodMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(MethodMetrics.class);
+
+    private final String name;
+    private final long slowCallThresholdNanos;
+    private final ConcurrentMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @param name the name of the instrumented interface, used in reports and slow-call logs
+     * @param slowCallThresholdMillis calls taking at least this long are logged, in milliseconds
+     */
+    public MethodMetrics(String name, long slowCallThresholdMillis) {
+        this.name = name;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMillis);
+    }
+
+    /**
+     * Retrieves the metrics of one method, creating them if necessary. Instrumented objects should
+     * look these up once, rather than on every call.
+     * @param method the method's name
+     * @return the method's metrics
+     */
+    public MethodStats method(String method) {
+        return methods.computeIfAbsent(method, MethodStats::new);
+    }
+
+    /**
+     * Reports each method's calls since the previous report: call count, latency percentiles,
+     * errors, and calls currently in flight. Methods without calls are skipped.
+     * @param reportFunction receives one line per method (e.g. <code>logger::info</code>)
+     */
+    public synchronized void report(Consumer<Object> reportFunction) {
+        for(Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            MethodStats stats = entry.getValue();
+            Histogram histogram = stats.getIntervalHistogram();
+            long errors = stats.errors.sumThenReset();
+
+            if(histogram.getTotalCount() == 0 && errors == 0) {
+                continue;
+            }
+
+            reportFunction.accept(name + "." + entry.getKey()
+                    + ": count=" + histogram.getTotalCount()
+                    + " p50=" + histogram.getValueAtPercentile(50) + "us"
+                    + " p99=" + histogram.getValueAtPercentile(99) + "us"
+                    + " p99.9=" + histogram.getValueAtPercentile(99.9) + "us"
+                    + " max=" + histogram.getMaxValue() + "us"
+                    + " errors=" + errors
+                    + " inFlight=" + stats.getInFlight());
+        }
+    }
+
+    public final class MethodStats {
+        private final String method;
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private Histogram recycled;
+
+        private MethodStats(String method) {
+            this.method = method;
+        }
+
+        /**
+         * Records the start of a call.
+         * @return the start time, to pass to <code>succeeded()</code> or <code>failed()</code>
+         */
+        public long start() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        public void succeeded(long start) {
+            end(start);
+        }
+
+        /**
+         * Records the successful end of a call that returns a value.
+         * @param start the call's start time
+         * @param result the call's result
+         * @param <T> the result type
+         * @return <code>result</code>
+         */
+        public <T> T succeeded(long start, T result) {
+            end(start);
+            return result;
+        }
+
+        /**
+         * Records the end of a call that threw an exception.
+         * @param start the call's start time
+         * @param e the exception
+         * @return <code>e</code>, to be rethrown
+         */
+        public RuntimeException failed(long start, RuntimeException e) {
+            errors.increment();
+            end(start);
+            return e;
+        }
+
+        /**
+         * Wraps the result handler of an asynchronous call, so that the call's end is recorded
+         * when the handler is called.
+         * @param start the call's start time
+         * @param handler the result handler
+         * @param <T> the result type
+         * @return the wrapped handler
+         */
+        public <T> Handler<AsyncResult<T>> timed(long start, Handler<AsyncResult<T>> handler) {
+            return res -> {
+                if(res.failed()) {
+                    errors.increment();
+                }
+                end(start);
+                handler.handle(res);
+            };
+        }
+
+        private void end(long start) {
+            long elapsed = System.nanoTime() - start;
+            inFlight.decrement();
+            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsed));
+
+            if(elapsed >= slowCallThresholdNanos) {
+                logger.warn("Slow call: " + name + "." + method + " took "
+                        + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            }
+        }
+
+        /**
+         * @return the latencies recorded since the previous call, in microseconds
+         */
+        public synchronized Histogram getIntervalHistogram() {
+            recycled = recorder.getIntervalHistogram(recycled);
+            return recycled.copy();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         * @return the number of failed calls since the last report
+         */
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+}
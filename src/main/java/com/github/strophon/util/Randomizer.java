@@ -93,6 +93,12 @@ public class Randomizer {
         Collections.shuffle(list, sr);
     }
 
+    public byte[] nextBytes(int size) {
+        byte[] bytes = new byte[size];
+        sr.nextBytes(bytes);
+        return bytes;
+    }
+
     public static String getFreshToken() {
         return BaseEncoding.base32().encode(getFreshTokenBytes());
     }
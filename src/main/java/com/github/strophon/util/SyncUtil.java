@@ -4,6 +4,7 @@ import co.paralleluniverse.fibers.Fiber;
 import co.paralleluniverse.fibers.FiberScheduler;
 import co.paralleluniverse.fibers.Suspendable;
 import com.github.strophon.cache.CacheAccessObject;
+import com.github.strophon.data.DataIO;
 import io.vertx.core.*;
 import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.eventbus.ReplyFailure;
@@ -44,6 +45,117 @@ public class SyncUtil {
         return await(resultHandler -> vertx.executeBlocking(blockingHandler, false, resultHandler));
     }
 
+    /**
+     * Runs a blocking handler that uses a <code>DataIO</code>, like <code>awaitBlocking()</code>.
+     * If the <code>DataIO</code> is non-blocking (see <code>DataIO.isNonBlocking()</code>), the
+     * handler is run directly on the current fiber instead of on a worker thread.
+     * @param vertx the Vert.x instance
+     * @param dio the <code>DataIO</code> used by the handler
+     * @param blockingHandler the handler
+     * @param <T> the result type
+     * @return the handler's result
+     */
+    @Suspendable
+    public static <T> T awaitBlocking(Vertx vertx, DataIO dio, Handler<Promise<T>> blockingHandler) {
+        if(dio.isNonBlocking()) {
+            return runOnFiber(blockingHandler);
+        }
+        return awaitBlocking(vertx, blockingHandler);
+    }
+
+    /**
+     * Unordered version of <code>awaitBlocking(Vertx, DataIO, Handler)</code>.
+     * @param vertx the Vert.x instance
+     * @param dio the <code>DataIO</code> used by the handler
+     * @param blockingHandler the handler
+     * @param <T> the result type
+     * @return the handler's result
+     */
+    @Suspendable
+    public static <T> T awaitBlockingUnordered(Vertx vertx, DataIO dio,
+                                               Handler<Promise<T>> blockingHandler) {
+        if(dio.isNonBlocking()) {
+            return runOnFiber(blockingHandler);
+        }
+        return awaitBlockingUnordered(vertx, blockingHandler);
+    }
+
+    /**
+     * Unordered version of <code>awaitBlocking(Vertx, DataIO, Handler)</code> that runs blocking
+     * handlers on a dedicated worker pool instead of the default one.
+     * @param workers the worker pool
+     * @param dio the <code>DataIO</code> used by the handler
+     * @param blockingHandler the handler
+     * @param <T> the result type
+     * @return the handler's result
+     */
+    @Suspendable
+    public static <T> T awaitBlockingUnordered(WorkerExecutor workers, DataIO dio,
+                                               Handler<Promise<T>> blockingHandler) {
+        if(dio.isNonBlocking()) {
+            return runOnFiber(blockingHandler);
+        }
+        return await(resultHandler ->
+                workers.executeBlocking(blockingHandler, false, resultHandler));
+    }
+
+    /**
+     * Starts a blocking handler that uses a <code>DataIO</code> without waiting for it, so that
+     * several can run concurrently. If the <code>DataIO</code> is non-blocking, the handler is run
+     * on a new fiber of the current context instead of on a worker thread.
+     * @param vertx the Vert.x instance
+     * @param dio the <code>DataIO</code> used by the handler
+     * @param blockingHandler the handler
+     * @param <T> the result type
+     * @return the handler's result
+     */
+    public static <T> Future<T> startBlockingUnordered(Vertx vertx, DataIO dio,
+                                                       Handler<Promise<T>> blockingHandler) {
+        Promise<T> promise = Promise.promise();
+        if(dio.isNonBlocking()) {
+            new Fiber<Void>(Sync.getContextScheduler(), () -> {
+                try {
+                    blockingHandler.handle(promise);
+                } catch(RuntimeException e) {
+                    promise.tryFail(e);
+                }
+            }).start();
+        } else {
+            vertx.executeBlocking(blockingHandler, false, promise);
+        }
+        return promise.future();
+    }
+
+    @Suspendable
+    private static <T> T runOnFiber(Handler<Promise<T>> handler) {
+        Promise<T> promise = Promise.promise();
+        try {
+            handler.handle(promise);
+        } catch(RuntimeException e) {
+            promise.tryFail(e); // as executeBlocking() would
+        }
+        return await(promise.future()::onComplete);
+    }
+
+    /**
+     * Pauses for a while. On a fiber, only the fiber is suspended, so that its event loop keeps
+     * running; elsewhere the current thread sleeps.
+     * @param millis the pause, in milliseconds
+     */
+    @Suspendable
+    public static void sleep(long millis) {
+        if(Fiber.currentFiber() != null) {
+            Vertx vertx = Vertx.currentContext().owner();
+            Sync.<Long>awaitEvent(handler -> vertx.setTimer(millis, handler));
+        } else {
+            try {
+                Thread.sleep(millis);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Convert a standard consumer to a consumer which runs on a fiber. This is necessary if you want to do fiber blocking
      * synchronous operations in your consumer.
@@ -0,0 +1,121 @@
+package com.github.strophon.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for expiring large numbers of items with O(1) scheduling cost. Each
+ * level has 64 slots; a slot on level <i>n</i> covers 64<sup><i>n</i></sup> ticks, and its items
+ * are redistributed to lower levels when the wheel reaches it. Deadlines further away than the
+ * top level can represent are parked in the top level and redistributed until they fit.
+ * Items cannot be cancelled; callers should check on expiry whether the item is still current.
+ * <code>schedule()</code> may be called from any thread; <code>advance()</code> must only be
+ * called from one thread at a time.
+ * @param <T> the type of the scheduled items
+ */
+public class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final Consumer<T> onExpire;
+    private final List<List<Scheduled<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private final Queue<Scheduled<T>> incoming = new ConcurrentLinkedQueue<>();
+
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, long now, Consumer<T> onExpire) {
+        this.tickMillis = tickMillis;
+        this.onExpire = onExpire;
+        this.currentTick = now / tickMillis;
+
+        for(int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules an item to expire at the first tick at or after its deadline.
+     * @param item the item
+     * @param deadline the expiry time, in epoch milliseconds
+     */
+    public void schedule(T item, long deadline) {
+        incoming.add(new Scheduled<>(item, (deadline + tickMillis - 1) / tickMillis));
+    }
+
+    /**
+     * Expires every item whose deadline is at or before <code>now</code>.
+     * @param now the current time, in epoch milliseconds
+     */
+    public void advance(long now) {
+        Scheduled<T> scheduled;
+        while((scheduled = incoming.poll()) != null) {
+            place(scheduled);
+        }
+
+        long targetTick = now / tickMillis;
+        while(currentTick < targetTick) {
+            currentTick++;
+
+            for(int level = 1; level < LEVELS; level++) {
+                if((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level);
+            }
+
+            List<Scheduled<T>> slot = slots.get(slotIndex(0, currentTick));
+            for(Scheduled<T> expired : slot) {
+                onExpire.accept(expired.item);
+            }
+            slot.clear();
+        }
+    }
+
+    private void cascade(int level) {
+        List<Scheduled<T>> slot = slots.get(slotIndex(level, currentTick >> (SLOT_BITS * level)));
+        List<Scheduled<T>> moved = new ArrayList<>(slot);
+        slot.clear();
+
+        for(Scheduled<T> scheduled : moved) {
+            place(scheduled);
+        }
+    }
+
+    private void place(Scheduled<T> scheduled) {
+        long delta = scheduled.tick - currentTick;
+
+        if(delta <= 0) {
+            onExpire.accept(scheduled.item);
+            return;
+        }
+
+        long tick = Math.min(scheduled.tick, currentTick + (1L << (SLOT_BITS * LEVELS)) - 1);
+        delta = tick - currentTick;
+
+        int level = 0;
+        while(level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+
+        slots.get(slotIndex(level, tick >> (SLOT_BITS * level))).add(scheduled);
+    }
+
+    private static int slotIndex(int level, long levelTick) {
+        return level * SLOTS + (int) (levelTick & (SLOTS - 1));
+    }
+
+    private static final class Scheduled<T> {
+        private final T item;
+        private final long tick;
+
+        private Scheduled(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
@@ -8,6 +8,9 @@ import com.github.strophon.util.SyncUtil;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
@@ -19,16 +22,24 @@ import com.github.strophon.action.input.ActionInput;
 import com.github.strophon.action.output.Result;
 import com.github.strophon.cache.CacheAccessObject;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.InMemoryStateEngine;
 import com.github.strophon.data.transfer.DataSource;
 import com.github.strophon.init.Instantiator;
+import com.github.strophon.journal.ActionJournal;
+
+import java.io.IOException;
 
 public class ActionVerticle extends SyncVerticle {
     private static final Gson GSON = new Gson();
     private static final Logger logger = LoggerFactory.getLogger(ActionVerticle.class);
+    private static final String READ_ONLY_POOL_NAME = "read-only-actions";
 
     private Instantiator instantiator;
     private CacheAccessObject cache;
     private ActionExecutor executor;
+    private InMemoryStateEngine stateEngine;
+    private ActionJournal actionJournal;
+    private WorkerExecutor readOnlyWorkers;
 
     public ActionVerticle(Instantiator instantiator) {
         this.instantiator = instantiator;
@@ -37,15 +48,73 @@ public class ActionVerticle extends SyncVerticle {
     @Override
     @Suspendable
     public void start(Future<Void> startFuture) {
-        cache = instantiator.getCache();
+        cache = instantiator.decorateCache(vertx, instantiator.getCache());
+
+        if(instantiator.getEntityCache() != null) {
+            instantiator.getEntityCache().listen(vertx);
+        }
+
+        executor = new ActionExecutor(instantiator.getActionTypes(),
+                                      instantiator.getTypeRetriever(),
+                                      instantiator.getSubsequentActionPool())
+                .setRetryPolicy(instantiator.getMaxActionAttempts(),
+                                instantiator.getActionRetryBackoffMillis())
+                .setContentionMetrics(instantiator.getContentionMetrics())
+                .setOptimisticExecution(instantiator.useOptimisticExecution(),
+                                        instantiator.getMaxOptimisticAttempts());
+
+        stateEngine = instantiator.getStateEngine();
+        if(stateEngine != null) {
+            try { // only the first verticle instance actually recovers
+                SyncUtil.<Void>awaitBlocking(vertx, future -> {
+                    try {
+                        stateEngine.recover();
+                        future.complete();
+                    } catch(IOException e) {
+                        future.fail(e);
+                    }
+                });
+            } catch(Exception e) {
+                startFuture.fail(e);
+                return;
+            }
+        }
 
-        executor = new ActionExecutor(instantiator.getActionTypes(), instantiator.getTypeRetriever());
+        if(instantiator.getReadOnlyWorkerPoolSize() > 0) { // shared by every instance
+            readOnlyWorkers = vertx.createSharedWorkerExecutor(
+                    READ_ONLY_POOL_NAME, instantiator.getReadOnlyWorkerPoolSize());
+        }
+
+        actionJournal = instantiator.getActionJournal();
+        if(actionJournal != null) {
+            try { // only the first verticle instance actually starts it
+                actionJournal.start();
+            } catch(Exception e) {
+                startFuture.fail(e);
+                return;
+            }
+        }
 
         vertx.eventBus().consumer("action", Sync.fiberHandler(this::handleAction));
 
         startFuture.complete();
     }
 
+    @Override
+    @Suspendable
+    public void stop() {
+        if(actionJournal != null) {
+            try { // only the last verticle instance actually closes it, once it's written
+                SyncUtil.<Void>awaitBlocking(vertx, future -> {
+                    actionJournal.close();
+                    future.complete();
+                });
+            } catch(Exception e) {
+                logger.error("Failed to close action journal", e);
+            }
+        }
+    }
+
     @Suspendable
     private void handleAction(Message<String> msg) {
         String in = msg.body();
@@ -105,31 +174,66 @@ public class ActionVerticle extends SyncVerticle {
             return;
         }
 
-        try(DataIO dio = instantiator.getDataIoWithCache()) {
+        try {
             byte[] seed = action.needsRandomNumbers() ?
                     Randomizer.getFreshTokenBytes(instantiator.getTokenSize()) : null;
 
-            Result result = SyncUtil.awaitBlockingUnordered(vertx, future ->
-                    future.complete( executor.execute(action, seed, new DataSource(dio)) ) );
+            // a retried action is rebuilt, so use the instance that ran last
+            Action performed = stateEngine != null
+                    ? SyncUtil.<Action>awaitBlockingUnordered(vertx, future ->
+                            future.complete( stateEngine.execute(action, seed) ) )
+                    : executor.isReadOnly(action)
+                    ? executeReadOnly(action, seed)
+                    : executeOnDatabase(action, seed);
+
+            Result result =
+                    performed.getError() == null ? performed.getResult() : performed.getError();
 
             if(result == null) { // this shouldn't happen
                 handleError("Null Result from Action", in, null, msg, GENERIC_ERROR);
-                action.logAction(true, true, logger::error);
+                performed.logAction(true, true, logger::error);
                 return;
             }
 
-            action.logAction(logger.isDebugEnabled(), logger.isTraceEnabled(), logger::info);
+            boolean debug = logger.isDebugEnabled(), trace = logger.isTraceEnabled();
+            if(actionJournal == null || !actionJournal.offer(performed, debug, trace)) {
+                performed.logAction(debug, trace, logger::info);
+            }
 
             msg.reply(GSON.toJson(result));
 
-            if(result.getSuccess() && !action.getEvents().isEmpty()) {
-                vertx.eventBus().send( "server.events", GSON.toJson(action.getEvents()) );
+            if(result.getSuccess() && !performed.getEvents().isEmpty()) {
+                vertx.eventBus().send( "server.events", GSON.toJson(performed.getEvents()) );
             }
         } catch(Exception e) {
             handleError("Exception Encountered Post-Authentication", in, e, msg, GENERIC_ERROR);
         }
     }
 
+    @Suspendable
+    private Action executeOnDatabase(Action action, byte[] seed) {
+        try(DataIO dio = instantiator.openDataIo()) {
+            return SyncUtil.awaitBlockingUnordered(vertx, dio, future ->
+                    future.complete( executor.executeWithRetry(action, seed,
+                            new DataSource(dio, instantiator::openDataIo)) ) );
+        }
+    }
+
+    // no locks are taken, so there's nothing to retry
+    @Suspendable
+    private Action executeReadOnly(Action action, byte[] seed) {
+        try(DataIO dio = instantiator.openDataIo()) {
+            Handler<Promise<Action>> handler = future -> {
+                executor.execute(action, seed, new DataSource(dio));
+                future.complete(action);
+            };
+
+            return readOnlyWorkers == null
+                    ? SyncUtil.awaitBlockingUnordered(vertx, dio, handler)
+                    : SyncUtil.awaitBlockingUnordered(readOnlyWorkers, dio, handler);
+        }
+    }
+
     private static final String GENERIC_ERROR =
             GSON.toJson( new Result().setSuccess(false)
                                      .setError("An error occurred while processing your request") );
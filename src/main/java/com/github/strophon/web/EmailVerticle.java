@@ -0,0 +1,128 @@
+package com.github.strophon.web;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.github.strophon.data.DataIO;
+import com.github.strophon.email.EmailOutbox;
+import com.github.strophon.email.EmailSender;
+import com.github.strophon.email.OutboxEmail;
+import com.github.strophon.init.Instantiator;
+import com.github.strophon.util.SyncUtil;
+import io.vertx.core.Future;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.sync.Sync;
+import io.vertx.ext.sync.SyncVerticle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delivers emails from the outbox (see <code>EmailOutbox</code>). Woken up by a message on
+ * <code>OUTBOX_ADDRESS</code> whenever an email is enqueued, and by a timer so that retries and
+ * emails enqueued on other nodes are picked up.
+ */
+public class EmailVerticle extends SyncVerticle {
+    private static final Logger logger = LoggerFactory.getLogger(EmailVerticle.class);
+
+    public static final String OUTBOX_ADDRESS = "server.email.outbox";
+
+    private Instantiator instantiator;
+    private EmailSender sender;
+    private boolean draining;
+
+    public EmailVerticle(Instantiator instantiator) {
+        this.instantiator = instantiator;
+    }
+
+    @Override
+    @Suspendable
+    public void start(Future<Void> startFuture) {
+        sender = instantiator.createEmailSender();
+
+        vertx.eventBus().consumer(OUTBOX_ADDRESS, Sync.fiberHandler(msg -> drainOutbox()));
+        vertx.setPeriodic(instantiator.getEmailOutboxPollInterval(),
+                Sync.fiberHandler(id -> drainOutbox()));
+
+        startFuture.complete();
+    }
+
+    @Override
+    @Suspendable
+    public void stop() throws IOException {
+        if(sender instanceof Closeable) {
+            ((Closeable) sender).close();
+        }
+    }
+
+    @Suspendable
+    private void drainOutbox() {
+        if(draining) {
+            return; // already running on this instance; it will pick up the new email(s)
+        }
+
+        draining = true;
+        try {
+            int batchSize = instantiator.getEmailOutboxBatchSize();
+            int processed;
+            do {
+                processed = SyncUtil.awaitBlocking(vertx, future -> {
+                    try {
+                        future.complete(processBatch(batchSize));
+                    } catch(Exception e) {
+                        future.fail(e);
+                    }
+                });
+            } while(processed == batchSize);
+        } catch(Exception e) {
+            logger.error("Error while draining email outbox", e);
+        } finally {
+            draining = false;
+        }
+    }
+
+    private int processBatch(int batchSize) {
+        try(DataIO dio = instantiator.openDataIo()) {
+            EmailOutbox outbox = (EmailOutbox) dio;
+
+            List<OutboxEmail> emails = outbox.claimPendingEmails(batchSize);
+            dio.commitSql();
+
+            if(emails.isEmpty()) {
+                return 0;
+            }
+
+            List<Boolean> sent = sender.sendEmails(emails);
+
+            for(int i = 0; i < emails.size(); i++) {
+                OutboxEmail email = emails.get(i);
+
+                if(sent.get(i)) {
+                    outbox.markEmailSent(email.getId());
+                    continue;
+                }
+
+                int attempts = email.getAttempts() + 1;
+                if(attempts >= instantiator.getEmailMaxAttempts()) {
+                    logger.error("Giving up on " + email.getType() + " email " + email.getId()
+                            + " to user " + email.getUserId() + " after " + attempts + " attempts");
+                    outbox.abandonEmail(email.getId());
+                } else {
+                    outbox.rescheduleEmail(email.getId(), attempts,
+                            System.currentTimeMillis() + getRetryDelay(attempts));
+                }
+            }
+
+            dio.commitSql();
+
+            logger.info("Processed " + emails.size() + " outbox email(s)");
+
+            return emails.size();
+        }
+    }
+
+    private long getRetryDelay(int attempts) {
+        long delay = instantiator.getEmailRetryBaseDelay() << Math.min(attempts - 1, 20);
+        return Math.min(delay, instantiator.getEmailRetryMaxDelay());
+    }
+}
@@ -31,7 +31,7 @@ public class EventVerticle extends SyncVerticle {
     @Override
     @Suspendable
     public void start(Future<Void> startFuture) {
-        cache = instantiator.getCache();
+        cache = instantiator.decorateCache(vertx, instantiator.getCache());
         vertx.eventBus().consumer(
                 "server.events.login", Sync.fiberHandler(this::acceptLoginEvents));
         vertx.eventBus().consumer("server.events", Sync.fiberHandler(this::acceptEvents));
@@ -127,16 +127,16 @@ public class EventVerticle extends SyncVerticle {
     @Suspendable
     private void sendEvents(int userId, String sessionId,
                             String stringList, List<Event> events) {
-        try(DataIO dio = instantiator.getDataIoWithCache()) {
+        try(DataIO dio = instantiator.openDataIo()) {
             SyncUtil.<Message<String>>await(handler ->
                     vertx.eventBus().send("client." + sessionId + ".events", stringList, handler));
 
             Set<Integer> eventIds = new LinkedHashSet<>();
 
-            SyncUtil.awaitBlocking(vertx, future -> {
+            SyncUtil.awaitBlocking(vertx, dio, future -> {
                 for(Event event : events) {
                     if(event.getUserId() != null) {
-                        dio.markEventSeen(event.getId());
+                        dio.markEventSeen(event.getUserId(), event.getId());
                     }
                     eventIds.add(event.getId());
                 }
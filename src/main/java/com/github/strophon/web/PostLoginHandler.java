@@ -4,11 +4,13 @@ import co.paralleluniverse.fibers.Suspendable;
 import com.github.strophon.action.output.Event;
 import com.github.strophon.cache.CacheAccessObject;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.EventWriter;
 import com.github.strophon.data.transfer.User;
 import com.github.strophon.init.Instantiator;
 import com.github.strophon.util.Misc;
 import com.github.strophon.util.SyncUtil;
 import com.google.gson.Gson;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.VertxException;
@@ -19,7 +21,6 @@ import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.sync.Sync;
 import io.vertx.ext.web.RoutingContext;
 
-import java.util.Collections;
 import java.util.List;
 
 public abstract class PostLoginHandler implements Handler<RoutingContext> {
@@ -29,11 +30,15 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
     protected Instantiator instantiator;
     protected EventBus bus;
     protected CacheAccessObject cache;
+    protected EventWriter loginEventWriter;
 
     public PostLoginHandler(Vertx vertx, Instantiator instantiator) {
         this.vertx = vertx;
         this.instantiator = instantiator;
-        this.cache = instantiator.getCache();
+        this.cache = instantiator.decorateCache(vertx, instantiator.getCache());
+        this.loginEventWriter = new EventWriter(vertx, instantiator::openDataIo,
+                instantiator.getLoginEventBatchSize(), instantiator.getLoginEventFlushInterval(),
+                instantiator.getLoginEventMaxAttempts(), instantiator.getLoginEventRetryBackoff());
         bus = vertx.eventBus();
         bus.consumer("login.confirm", Sync.fiberHandler(this::confirmLogin));
     }
@@ -59,12 +64,10 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
 
                 Event loginEvent = createLoginEvent(clientIpAddress, user);
 
-                try(DataIO dio = instantiator.getDataIoWithCache()) {
-                    SyncUtil.awaitBlocking(vertx, future -> {
-                        dio.addEvents(Collections.singletonList(loginEvent));
-                        dio.commitSql();
-                        future.complete();
-                    });
+                if(instantiator.getLoginEventDurability() == EventWriter.Durability.COMMITTED) {
+                    SyncUtil.<Void>await(handler -> loginEventWriter.write(loginEvent, handler));
+                } else {
+                    loginEventWriter.write(loginEvent, null);
                 }
 
                 logger.info("User " + user.getId() + " logged in successfully from IP "
@@ -80,6 +83,14 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
         }
     }
 
+    /**
+     * Writes out any buffered login events and stops the flush timer.
+     * @return a future completed once the buffered login events have been written
+     */
+    public Future<Void> close() {
+        return loginEventWriter.close();
+    }
+
     /**
      * Allows for the removal of any cache information used as part of the login process, if needed.
      * Use of <code>SyncUtil.await()</code> recommended to keep method from finishing until
@@ -117,7 +128,7 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
 
         if(sessionId != null && Misc.secureEqualsIgnoreCase(sessionId, challenge)) {
             List<? extends Event> unseen;
-            try(DataIO dio = instantiator.getDataIoWithCache()) {
+            try(DataIO dio = instantiator.openDataIo()) {
                 logger.info("User " + userId + " successfully confirmed login.");
 
                 String data = retrieveUserData(dio, userId);
@@ -128,7 +139,7 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
 
                 logger.info("User data sent to user " + userId);
 
-                unseen = SyncUtil.awaitBlocking(vertx, future ->
+                unseen = SyncUtil.awaitBlocking(vertx, dio, future ->
                         future.complete(dio.getUnseenEventsSinceFirstUnseen(userId)));
 
                 bus.send("server.events.login", GSON.toJson(unseen));
@@ -140,7 +151,8 @@ public abstract class PostLoginHandler implements Handler<RoutingContext> {
 
     /**
      * This method is used to retrieve a user's data (to send to them once they have logged in). All
-     * blocking calls must use <code>SyncUtil.awaitBlocking()</code>.
+     * blocking calls must use <code>SyncUtil.awaitBlocking()</code>, passing <code>dio</code> so
+     * that a non-blocking <code>DataIO</code> is called directly on the fiber.
      * IMPORTANT NOTE: It is *imperative* that this method be annotated <code>@Suspendable</code>
      * if any <code>SyncUtil</code> calls are made here!
      * @param dio the <code>DataIO</code> object which will be used to retrieve the user's data
@@ -3,10 +3,14 @@ package com.github.strophon.web;
 import co.paralleluniverse.fibers.Suspendable;
 import com.github.strophon.util.Randomizer;
 import com.google.gson.Gson;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.auth.AuthProvider;
@@ -23,10 +27,16 @@ import io.vertx.ext.web.handler.sockjs.BridgeOptions;
 import io.vertx.ext.web.handler.sockjs.SockJSHandler;
 import io.vertx.ext.web.sstore.ClusteredSessionStore;
 import io.vertx.ext.web.sstore.SessionStore;
+import com.github.strophon.ActionServerBuilder;
+import com.github.strophon.auth.SecretTokenCache;
 import com.github.strophon.cache.CacheAccessObject;
+import com.github.strophon.cache.IpBanFilter;
 import com.github.strophon.data.DataIO;
+import com.github.strophon.data.UniquenessIndex;
 import com.github.strophon.data.transfer.User;
+import com.github.strophon.email.EmailOutbox;
 import com.github.strophon.email.EmailSender;
+import com.github.strophon.email.OutboxEmail;
 import com.github.strophon.init.Instantiator;
 import com.github.strophon.util.SyncUtil;
 
@@ -41,7 +51,12 @@ public abstract class ServerVerticle extends SyncVerticle {
 
     protected Instantiator instantiator;
     protected CacheAccessObject cache;
+    protected IpBanFilter ipBanFilter;
+    private long ipBanFlushTimer;
+    protected UniquenessIndex uniquenessIndex;
+    protected SecretTokenCache secretTokenCache;
     protected EmailSender sender;
+    protected PostLoginHandler postLoginHandler;
 
     public ServerVerticle(Instantiator instantiator) {
         this.instantiator = instantiator;
@@ -52,9 +67,36 @@ public abstract class ServerVerticle extends SyncVerticle {
     public void start() {
         sender = instantiator.createEmailSender();
 
-        cache = instantiator.getCache();
+        cache = instantiator.decorateCache(vertx, instantiator.getCache());
 
-        HttpServer server = vertx.createHttpServer();
+        ipBanFilter = IpBanFilter.getShared(vertx, cache, instantiator.getIpFailureWindow(),
+                instantiator.getLocalIpBanDuration(), instantiator.getIpBanCheckTtl(),
+                instantiator.getIpFailureFlushInterval());
+
+        vertx.eventBus().<String>consumer(IpBanFilter.BAN_ADDRESS,
+                msg -> ipBanFilter.banLocally(msg.body()));
+        ipBanFlushTimer = vertx.setPeriodic(instantiator.getIpFailureFlushInterval(),
+                id -> ipBanFilter.flushIfDue());
+
+        if(useSecretToken()) {
+            secretTokenCache = SecretTokenCache.getShared(vertx,
+                    instantiator.getSecretTokenCacheTtl(), instantiator.getSecretTokenCacheSize());
+
+            vertx.eventBus().<Integer>consumer(SecretTokenCache.INVALIDATE_ADDRESS,
+                    msg -> secretTokenCache.invalidate(msg.body()));
+        }
+
+        if(instantiator.useUniquenessIndex()) {
+            uniquenessIndex = UniquenessIndex.getShared(vertx, instantiator.getExpectedUserCount(),
+                    instantiator::openDataIo);
+
+            vertx.eventBus().<String>consumer(UniquenessIndex.REGISTERED_ADDRESS, msg -> {
+                String[] nameAndEmail = GSON.fromJson(msg.body(), String[].class);
+                uniquenessIndex.add(nameAndEmail[0], nameAndEmail[1]);
+            });
+        }
+
+        HttpServer server = vertx.createHttpServer(getHttpServerOptions());
 
         Router router = Router.router(vertx);
 
@@ -88,7 +130,7 @@ public abstract class ServerVerticle extends SyncVerticle {
 
         AuthHandler authHandler = getAuthHandler(authProvider);
 
-        PostLoginHandler postLoginHandler = instantiator.createPostLoginHandler(vertx);
+        postLoginHandler = instantiator.createPostLoginHandler(vertx);
 
         BridgeOptions bridgeOptions = getDefaultBridgeOptions();
         setAdditionalBridgeOptions(bridgeOptions);
@@ -104,7 +146,14 @@ public abstract class ServerVerticle extends SyncVerticle {
               .handler(Sync.fiberHandler(postLoginHandler))
               .handler(sockJSHandler);
 
-        server.requestHandler(router::accept).listen(8080);
+        server.requestHandler(router::accept).listen(res -> {
+            if(res.succeeded()) {
+                logger.info("HTTP server listening on port " + res.result().actualPort()
+                        + (vertx.isNativeTransportEnabled() ? " (native transport)" : ""));
+            } else {
+                logger.error("HTTP server failed to start", res.cause());
+            }
+        });
 
         vertx.eventBus().consumer("pause", this::pause);
 
@@ -113,6 +162,35 @@ public abstract class ServerVerticle extends SyncVerticle {
         startEventBusServices();
     }
 
+    @Override
+    @Suspendable
+    public void stop() {
+        if(postLoginHandler != null) {
+            try { // so that buffered login events aren't lost on undeployment
+                SyncUtil.<Void>await(postLoginHandler.close()::onComplete);
+            } catch(Exception e) {
+                logger.error("Failed to write buffered login events", e);
+            }
+        }
+
+        if(ipBanFilter != null) {
+            vertx.cancelTimer(ipBanFlushTimer);
+            ipBanFilter.flush();
+        }
+    }
+
+    /**
+     * Provides the options for this verticle's HTTP server: those passed to
+     * <code>ActionServerBuilder.withHttpServerOptions()</code> if any, otherwise those from
+     * <code>Instantiator.getHttpServerOptions()</code>.
+     * @return HTTP server options
+     */
+    protected HttpServerOptions getHttpServerOptions() {
+        JsonObject options = config().getJsonObject(ActionServerBuilder.HTTP_SERVER_OPTIONS_KEY);
+        return options != null ?
+                new HttpServerOptions(options) : instantiator.getHttpServerOptions();
+    }
+
     /**
      * Instantiates an <code>AuthProvider</code> for the server to use.
      * @return instantiated <code>AuthProvider</code>
@@ -271,14 +349,36 @@ public abstract class ServerVerticle extends SyncVerticle {
     }
 
     /**
-     * Checks the cache to see if we have already received an excessive number of failed requests
-     * from this IP address and should ignore further requests.
+     * Checks to see if we have already received an excessive number of failed requests from this
+     * IP address and should ignore further requests. IPs already banned on this node are rejected
+     * without consulting the cache, and IPs the cache recently reported as not banned are
+     * accepted without consulting it again (see <code>Instantiator.getIpBanCheckTtl()</code>).
      * @param clientIpAddress client's IP address, in <code>String</code> form
      * @return <code>true</code> if the IP is banned, <code>false</code> if not
      */
     @Suspendable
     protected boolean checkForIpBan(String clientIpAddress) {
-        return SyncUtil.await(handler -> cache.checkForIpBan(clientIpAddress, handler));
+        if(ipBanFilter.isBanned(clientIpAddress)) {
+            return true;
+        }
+
+        if(ipBanFilter.isRecentlyChecked(clientIpAddress)) {
+            return false;
+        }
+
+        boolean banned = SyncUtil.await(handler -> cache.checkForIpBan(clientIpAddress, handler));
+        ipBanFilter.checked(clientIpAddress, banned);
+
+        return banned;
+    }
+
+    /**
+     * Records a failed request from this IP address. Failures are counted locally and flushed to
+     * the cache periodically, rather than costing a cache round-trip each.
+     * @param clientIpAddress client's IP address, in <code>String</code> form
+     */
+    protected void logIpForPotentialBan(String clientIpAddress) {
+        ipBanFilter.logFailure(clientIpAddress);
     }
 
     /**
@@ -323,7 +423,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                 + context.request().getParam("userId")
                 + "\" unparseable; IP " + clientIpAddress);
 
-        cache.logIpForPotentialBan(clientIpAddress, res -> { });
+        logIpForPotentialBan(clientIpAddress);
 
         context.fail(400);
     }
@@ -332,7 +432,7 @@ public abstract class ServerVerticle extends SyncVerticle {
     private void registerUser(RoutingContext context) {
         try {
             String clientIpAddress = getClientIp(context);
-            if(SyncUtil.await(handler -> cache.checkForIpBan(clientIpAddress, handler))) {
+            if(checkForIpBan(clientIpAddress)) {
                 handleIpBan(context, "registration attempt", clientIpAddress);
                 return;
             }
@@ -343,7 +443,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                 logger.info("Failed registration attempt: name \"" + name + "\" too long; IP "
                         + clientIpAddress);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.response()
                        .setStatusCode(400).end(
@@ -354,7 +454,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                         "Failed registration attempt: name \"" + name + "\" too short; IP "
                                 + clientIpAddress);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.response()
                        .setStatusCode(400).end(
@@ -366,7 +466,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                 logger.info("Failed registration attempt: name \"" + name + "\" "
                         + "starts with non-alphabetic character; IP " + clientIpAddress);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.response().setStatusCode(400).end("Name must start with a letter.");
                 return;
@@ -378,7 +478,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                         logger.info("Failed registration attempt: name \"" + name + "\" "
                                 + "contains non-alphanumeric characters; IP " + clientIpAddress);
 
-                        cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                        logIpForPotentialBan(clientIpAddress);
 
                         context.response().setStatusCode(400).end("Name may only contain "
                                 + "alphanumeric characters.");
@@ -396,7 +496,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                 logger.info("Failed registration attempt: " +
                         (authInfo.errorMessage != null ?
                                 authInfo.errorMessage : defaultErrorMessage));
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.fail(400);
                 return;
@@ -410,21 +510,27 @@ public abstract class ServerVerticle extends SyncVerticle {
                 logger.info("Failed registration attempt: invalid email; IP "
                         + clientIpAddress + "; provided email: " + strEmail);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.response().setStatusCode(400).end("Invalid email address provided.");
                 return;
             }
 
-            try(DataIO dio = instantiator.getDataIoWithCache()) {
-                boolean nameIsTaken = isNameTaken(dio, name);
-                boolean emailIsTaken = !nameIsTaken && isEmailTaken(dio, email.toString());
+            Future<Boolean> nameCheck = isNameTaken(name);
+            Future<Boolean> emailCheck = isEmailTaken(email.toString());
+
+            SyncUtil.<CompositeFuture>await(handler ->
+                    CompositeFuture.all(nameCheck, emailCheck).onComplete(handler));
+
+            try(DataIO dio = instantiator.openDataIo()) {
+                boolean nameIsTaken = nameCheck.result();
+                boolean emailIsTaken = !nameIsTaken && emailCheck.result();
 
                 if(nameIsTaken || emailIsTaken) {
                     logger.info("Failed registration attempt: " + (nameIsTaken ? "name " : "email ")
                             + name + " taken; IP " + clientIpAddress);
 
-                    cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                    logIpForPotentialBan(clientIpAddress);
 
                     context.response()
                            .setStatusCode(409)
@@ -440,32 +546,51 @@ public abstract class ServerVerticle extends SyncVerticle {
 
                 cache.addEmailToken(user.getId(), emailToken, res -> { });
 
-                SyncUtil.awaitBlockingUnordered(vertx, future -> {
-                    try {
-                        dio.addUser(user);
-                        dio.commitSql();
-                        future.complete();
-                    } catch(Exception e) {
-                        future.fail(e);
-                    }
-                });
-
-                boolean emailSent = SyncUtil.awaitBlockingUnordered(vertx, future -> {
-                    boolean sent = sendEmail(user.getId(), email, name, emailToken);
-                    if(!sent) {
-                        dio.deleteUser(user);
-                        dio.commitSql();
+                if(instantiator.useEmailOutbox()) {
+                    // the email is committed with the user, and sent by an EmailVerticle
+                    SyncUtil.awaitBlockingUnordered(vertx, dio, future -> {
+                        try {
+                            dio.addUser(user);
+                            enqueueEmail(dio, OutboxEmail.Type.REGISTRATION, user.getId(),
+                                    email, name, emailToken);
+                            dio.commitSql();
+                            future.complete();
+                        } catch(Exception e) {
+                            future.fail(e);
+                        }
+                    });
+
+                    vertx.eventBus().send(EmailVerticle.OUTBOX_ADDRESS, null);
+                } else {
+                    SyncUtil.awaitBlockingUnordered(vertx, dio, future -> {
+                        try {
+                            dio.addUser(user);
+                            dio.commitSql();
+                            future.complete();
+                        } catch(Exception e) {
+                            future.fail(e);
+                        }
+                    });
+
+                    boolean emailSent = SyncUtil.awaitBlockingUnordered(vertx, future -> {
+                        boolean sent = sendEmail(user.getId(), email, name, emailToken);
+                        if(!sent) {
+                            dio.deleteUser(user);
+                            dio.commitSql();
+                        }
+                        future.complete(sent);
+                    });
+
+                    if(!emailSent) {
+                        logger.info("Failed registration attempt: email send failed; IP " +
+                                clientIpAddress + "; email address: " + strEmail);
+                        context.fail(500);
+                        return;
                     }
-                    future.complete(sent);
-                });
-
-                if(!emailSent) {
-                    logger.info("Failed registration attempt: email send failed; IP " +
-                            clientIpAddress + "; email address: " + strEmail);
-                    context.fail(500);
-                    return;
                 }
 
+                invalidateSecretToken(user.getId());
+
                 logger.info("New user registered: " + GSON.toJson(user)
                         + "; IP " + clientIpAddress);
 
@@ -515,9 +640,14 @@ public abstract class ServerVerticle extends SyncVerticle {
      *                information
      * @return a populated <code>UserAuthInfo</code> object
      */
+    @Suspendable
     protected UserAuthInfo retrieveUserAuthInfo(RoutingContext context) {
         UserAuthInfo authInfo = new UserAuthInfo();
 
+        if(context.request().getParam("userId") != null) {
+            authInfo.userId = getUserIdFromIncomingRequest(context);
+        }
+
         if(useSecretToken()) {
             authInfo.secretToken = context.request().getParam("secretToken");
         }
@@ -532,13 +662,17 @@ public abstract class ServerVerticle extends SyncVerticle {
     /**
      * Allows for parsing and verification (for ECDSA authentication) or hashing (for password
      * authentication) of the string value provided by the client for authentication. Should return
-     * <code>null</code> if parsing/verification/hashing fails.
+     * <code>null</code> if parsing/verification/hashing fails. CPU-heavy work should be handed off
+     * (e.g. with <code>SyncUtil.await()</code>) rather than done on the calling fiber.
+     * IMPORTANT NOTE: It is *imperative* that this method be annotated <code>@Suspendable</code>
+     * if any <code>SyncUtil</code> calls are made here!
      * @param authInfo a <code>UserAuthInfo</code> containing the provided authentication string
      *                 value, to carry back to the caller either the successfully converted
      *                 authentication blob or, optionally, an error message
      * @return the byte array comprising the authentication blob (e.g. password hash, public key)
      * to be stored in the database, or <code>null</code> if parsing or verification fail
      */
+    @Suspendable
     protected abstract void verifyAndConvertAuthBlob(UserAuthInfo authInfo);
 
     /**
@@ -565,24 +699,41 @@ public abstract class ServerVerticle extends SyncVerticle {
         }
     }
 
-    @Suspendable
-    private boolean isNameTaken(DataIO dio, String name) {
-        return SyncUtil.awaitBlockingUnordered(vertx, future -> {
+    /**
+     * Checks whether a name is in use, skipping the database if the uniqueness index rules it out.
+     * Each check opens its own <code>DataIO</code>, so the name and email checks can run
+     * concurrently.
+     */
+    private Future<Boolean> isNameTaken(String name) {
+        if(uniquenessIndex != null && !uniquenessIndex.mightContainName(name)) {
+            return Future.succeededFuture(false);
+        }
+
+        DataIO dio = instantiator.openDataIo();
+        return SyncUtil.startBlockingUnordered(vertx, dio, future -> {
             try {
                 future.complete(dio.isNameUsed(name));
             } catch(Exception e) {
                 future.fail(e);
+            } finally {
+                dio.close();
             }
         });
     }
 
-    @Suspendable
-    private boolean isEmailTaken(DataIO dio, String email) {
-        return SyncUtil.awaitBlockingUnordered(vertx, future -> {
+    private Future<Boolean> isEmailTaken(String email) {
+        if(uniquenessIndex != null && !uniquenessIndex.mightContainEmail(email)) {
+            return Future.succeededFuture(false);
+        }
+
+        DataIO dio = instantiator.openDataIo();
+        return SyncUtil.startBlockingUnordered(vertx, dio, future -> {
             try {
                 future.complete(dio.isEmailUsed(email));
             } catch(Exception e) {
                 future.fail(e);
+            } finally {
+                dio.close();
             }
         });
     }
@@ -592,6 +743,15 @@ public abstract class ServerVerticle extends SyncVerticle {
         return sender.sendRegistrationEmail(userId, email, playerName, emailToken);
     }
 
+    private void enqueueEmail(DataIO dio, OutboxEmail.Type type, int userId,
+                              InternetAddress email, String name, String token) {
+        ((EmailOutbox) dio).enqueueEmail(new OutboxEmail().setType(type)
+                                                          .setUserId(userId)
+                                                          .setAddress(email.toString())
+                                                          .setName(name)
+                                                          .setToken(token));
+    }
+
     @Suspendable
     private void confirmEmail(RoutingContext context) {
         try {
@@ -616,13 +776,13 @@ public abstract class ServerVerticle extends SyncVerticle {
             if(retrievedToken != null && !correct) {
                 logger.info("Failed confirmation attempt: token incorrect (submitted: " + emailToken
                         + "; actual: " + retrievedToken + "); IP " + clientIpAddress);
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
                 context.fail(401);
                 return;
             }
 
-            try(DataIO dio = instantiator.getDataIoWithCache()) {
-                User user = SyncUtil.awaitBlocking(vertx, future ->
+            try(DataIO dio = instantiator.openDataIo()) {
+                User user = SyncUtil.awaitBlocking(vertx, dio, future ->
                         future.complete(dio.getUser(userId, true)));
 
                 boolean success = correct
@@ -642,7 +802,7 @@ public abstract class ServerVerticle extends SyncVerticle {
                                             + user.getEmailToken() + ")"))
                             + "; IP " + clientIpAddress);
 
-                    cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                    logIpForPotentialBan(clientIpAddress);
 
                     context.fail(401);
 
@@ -674,7 +834,8 @@ public abstract class ServerVerticle extends SyncVerticle {
     /**
      * Allows implementers to take any appropriate actions upon successful confirmation of user's
      * email address (in particular, updating or inserting rows to any appropriate database tables).
-     * All blocking calls must use <code>SyncUtil.awaitBlocking()</code>.
+     * All blocking calls must use <code>SyncUtil.awaitBlocking()</code>, passing <code>dio</code> so
+     * that a non-blocking <code>DataIO</code> is called directly on the fiber.
      * IMPORTANT NOTE: It is *imperative* that this method be annotated <code>@Suspendable</code>
      * if any <code>SyncUtil</code> calls are made here!
      * @param dio the <code>DataIO</code> object which will be used to make any database changes
@@ -688,8 +849,7 @@ public abstract class ServerVerticle extends SyncVerticle {
     private void recover(RoutingContext context) {
         String clientIpAddress = getClientIp(context);
 
-        boolean ipBanned = SyncUtil.await(handler -> cache.checkForIpBan(clientIpAddress, handler));
-        if(ipBanned) {
+        if(checkForIpBan(clientIpAddress)) {
             handleIpBan(context, "recovery", clientIpAddress);
             return;
         }
@@ -702,14 +862,14 @@ public abstract class ServerVerticle extends SyncVerticle {
             logger.info("Failed recovery attempt: invalid email; IP "
                     + clientIpAddress + "; provided email: " + strEmail);
 
-            cache.logIpForPotentialBan(clientIpAddress, res -> { });
+            logIpForPotentialBan(clientIpAddress);
 
             context.response().setStatusCode(400).end("Invalid email address provided.");
             return;
         }
 
-        try(DataIO dio = instantiator.getDataIoWithCache()) {
-            User user = SyncUtil.awaitBlockingUnordered(vertx,
+        try(DataIO dio = instantiator.openDataIo()) {
+            User user = SyncUtil.awaitBlockingUnordered(vertx, dio,
                     future -> future.complete(dio.getUserByEmail(email.toString())));
 
             HttpServerResponse response = context.response();
@@ -718,6 +878,26 @@ public abstract class ServerVerticle extends SyncVerticle {
                 String recoveryToken = Randomizer.getFreshToken(getRecoveryTokenSize());
                 user.setRecoveryToken(recoveryToken);
 
+                if(instantiator.useEmailOutbox()) {
+                    SyncUtil.awaitBlockingUnordered(vertx, dio, future -> {
+                        try {
+                            dio.updateUser(user);
+                            enqueueEmail(dio, OutboxEmail.Type.RECOVERY, user.getId(),
+                                    email, user.getName(), recoveryToken);
+                            dio.commitSql();
+                            future.complete();
+                        } catch(Exception e) {
+                            future.fail(e);
+                        }
+                    });
+
+                    vertx.eventBus().send(EmailVerticle.OUTBOX_ADDRESS, null);
+
+                    response.end("If that email address was found in our database, a recovery "
+                            + "email has been sent to you.");
+                    return;
+                }
+
                 boolean emailSent = SyncUtil.awaitBlockingUnordered(vertx, future -> {
                     boolean sent = sender.sendRecoveryEmail(user.getId(), email,
                             user.getName(), recoveryToken);
@@ -733,7 +913,7 @@ public abstract class ServerVerticle extends SyncVerticle {
 
                 updateUser(dio, user);
             } else {
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
             }
 
             response.end("If that email address was found in our database, a recovery email has "
@@ -764,7 +944,7 @@ public abstract class ServerVerticle extends SyncVerticle {
             logger.info("Failed recovery attempt: " +
                     (authInfo.errorMessage != null ?
                             authInfo.errorMessage : defaultErrorMessage));
-            cache.logIpForPotentialBan(clientIpAddress, res -> { });
+            logIpForPotentialBan(clientIpAddress);
 
             context.fail(400);
             return;
@@ -772,8 +952,8 @@ public abstract class ServerVerticle extends SyncVerticle {
 
         boolean recoverySucceeded = false;
 
-        try(DataIO dio = instantiator.getDataIoWithCache()) {
-            User user = SyncUtil.awaitBlockingUnordered(vertx,
+        try(DataIO dio = instantiator.openDataIo()) {
+            User user = SyncUtil.awaitBlockingUnordered(vertx, dio,
                     future -> future.complete(dio.getUser(userId, false)));
 
             if(user.getRecoveryToken() != null
@@ -793,7 +973,7 @@ public abstract class ServerVerticle extends SyncVerticle {
             context.response().end("Recovery succeeded!");
         } else {
             logger.info("Failed recovery attempt: user had no token in DB, or token incorrect.");
-            cache.logIpForPotentialBan(clientIpAddress, res -> { });
+            logIpForPotentialBan(clientIpAddress);
 
             context.response().setStatusCode(400).end("Recovery failed.");
         }
@@ -812,7 +992,7 @@ public abstract class ServerVerticle extends SyncVerticle {
 
     @Suspendable
     private void updateUser(DataIO dio, User user) {
-        SyncUtil.awaitBlockingUnordered(vertx, future -> {
+        SyncUtil.awaitBlockingUnordered(vertx, dio, future -> {
             try {
                 dio.updateUser(user);
                 dio.commitSql();
@@ -821,9 +1001,23 @@ public abstract class ServerVerticle extends SyncVerticle {
                 future.fail(e);
             }
         });
+
+        invalidateSecretToken(user.getId());
+    }
+
+    /**
+     * Drops a user's cached secret token on every node. Must be called whenever a user's secret
+     * token may have changed, or a user with that ID may have been created.
+     * @param userId the user's ID
+     */
+    protected void invalidateSecretToken(int userId) {
+        if(secretTokenCache != null) {
+            vertx.eventBus().publish(SecretTokenCache.INVALIDATE_ADDRESS, userId);
+        }
     }
 
     protected static class UserAuthInfo {
+        public Integer userId;
         public String secretToken;
         public String rawAuthBlob;
         public byte[] parsedAndConvertedAuthBlob;
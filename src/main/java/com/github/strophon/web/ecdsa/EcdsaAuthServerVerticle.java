@@ -1,6 +1,7 @@
 package com.github.strophon.web.ecdsa;
 
 import co.paralleluniverse.fibers.Suspendable;
+import com.github.strophon.auth.EcdsaVerifier;
 import com.github.strophon.data.DataIO;
 import com.github.strophon.data.transfer.User;
 import com.github.strophon.init.Instantiator;
@@ -26,10 +27,21 @@ import java.util.Base64;
 public abstract class EcdsaAuthServerVerticle extends ServerVerticle {
     private static final Logger logger = LoggerFactory.getLogger(EcdsaAuthServerVerticle.class);
 
+    protected EcdsaVerifier verifier;
+
     public EcdsaAuthServerVerticle(Instantiator instantiator) {
         super(instantiator);
     }
 
+    @Override
+    @Suspendable
+    public void start() {
+        verifier = EcdsaVerifier.getShared(vertx, instantiator.getEcdsaVerificationPoolSize(),
+                instantiator.getPublicKeyCacheSize());
+
+        super.start();
+    }
+
     @Override
     protected AuthProvider getAuthProvider() {
         return new EcdsaAuthProvider(vertx, cache, instantiator);
@@ -70,25 +82,36 @@ public abstract class EcdsaAuthServerVerticle extends ServerVerticle {
                 logger.info("Failed challenge attempt: no secret token provided. User: " +
                         userId + "; IP: " + clientIpAddress);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.fail(401);
                 return;
             }
 
-            boolean tokenMatches;
-            try(DataIO dio = instantiator.getDataIoWithCache()) {
-                tokenMatches = SyncUtil.awaitBlockingUnordered(vertx, future -> {
-                    User user = dio.getUser(userId, false);
-                    if(user == null) {
-                        future.complete(false);
-                        return;
-                    }
+            Boolean tokenMatches = secretTokenCache == null ?
+                    null : secretTokenCache.matches(userId, secretToken);
+
+            if(tokenMatches == null) {
+                long generation = secretTokenCache == null ?
+                        0 : secretTokenCache.getGeneration(userId);
+
+                try(DataIO dio = instantiator.openDataIo()) {
+                    tokenMatches = SyncUtil.awaitBlockingUnordered(vertx, dio, future -> {
+                        User user = dio.getUser(userId, false);
+                        String userSecretToken = user == null ? null : user.getSecretToken();
 
-                    String userSecretToken = user.getSecretToken();
+                        if(secretTokenCache != null) {
+                            secretTokenCache.put(userId, userSecretToken, generation);
+                        }
 
-                    future.complete(Misc.secureEqualsIgnoreCase(userSecretToken, secretToken));
-                });
+                        if(user == null) {
+                            future.complete(false);
+                            return;
+                        }
+
+                        future.complete(Misc.secureEqualsIgnoreCase(userSecretToken, secretToken));
+                    });
+                }
             }
 
             if(tokenMatches) {
@@ -105,7 +128,7 @@ public abstract class EcdsaAuthServerVerticle extends ServerVerticle {
             } else {
                 logger.info("Failed challenge attempt: user " + userId + "; IP " + clientIpAddress);
 
-                cache.logIpForPotentialBan(clientIpAddress, res -> { });
+                logIpForPotentialBan(clientIpAddress);
 
                 context.fail(401);
             }
@@ -117,11 +140,14 @@ public abstract class EcdsaAuthServerVerticle extends ServerVerticle {
     }
 
     @Override
+    @Suspendable
     protected void verifyAndConvertAuthBlob(UserAuthInfo authInfo) {
         byte[] pubkey;
         try {
             pubkey = Base64.getUrlDecoder().decode(authInfo.rawAuthBlob);
-            ECKey.fromPublicOnly(pubkey); // ensure public key is valid
+            // ensure public key is valid; point decompression runs on the verification pool
+            SyncUtil.<ECKey>await(handler ->
+                    verifier.parsePublicKey(authInfo.userId, pubkey, handler));
             authInfo.parsedAndConvertedAuthBlob = pubkey;
         } catch(Exception e) {
             authInfo.parsedAndConvertedAuthBlob = null;